@@ -22,14 +22,48 @@
 
 package com.github.klikli_dev.occultism.api.client.gui;
 
+import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
 import com.github.klikli_dev.occultism.api.common.data.MachineReference;
 import net.minecraft.item.ItemStack;
 
+import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
 
 public interface IStorageControllerGui {
     //region Getter / Setter
-    void setStacks(List<ItemStack> stacks);
+
+    /**
+     * Replaces all displayed stacks.
+     *
+     * @param version the stack version of the snapshot.
+     * @param stacks  the stacks by item key dictionary id.
+     */
+    void setStacks(long version, Map<Integer, ItemStack> stacks);
+
+    /**
+     * @return the stack version currently displayed, or -1 if no snapshot was received yet.
+     */
+    long getStackVersion();
+
+    void setStackVersion(long version);
+
+    /**
+     * Updates a single displayed stack.
+     *
+     * @param id    the item key dictionary id of the stack.
+     * @param stack the stack including the new count, null to remove the stack.
+     */
+    void updateStack(int id, @Nullable ItemStack stack);
+
+    /**
+     * Replaces the displayed stacks with a single page, used by clients that let the server search and sort.
+     *
+     * @param offset the index of the first stack of the page within all matching stacks.
+     * @param total  the total amount of matching stacks.
+     * @param stacks the stacks in the page.
+     */
+    void setStackPage(int offset, int total, List<ItemStack> stacks);
 
     void setUsedSlots(int slots);
 
@@ -38,5 +72,20 @@ public interface IStorageControllerGui {
     void markDirty();
 
     void setLinkedMachines(List<MachineReference> machines);
+
+    /**
+     * @return the version of the displayed linked machines, or -1 if the list was not received yet.
+     */
+    long getLinkedMachinesVersion();
+
+    void setLinkedMachinesVersion(long version);
+
+    /**
+     * Adds, replaces or removes a single displayed linked machine.
+     *
+     * @param position the position of the machine.
+     * @param machine  the machine, null to remove it.
+     */
+    void updateLinkedMachine(GlobalBlockPos position, @Nullable MachineReference machine);
     //endregion Getter / Setter
 }
@@ -23,7 +23,9 @@
 package com.github.klikli_dev.occultism.api.common.container;
 
 import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummary;
 import net.minecraft.inventory.CraftingInventory;
 import net.minecraft.inventory.Inventory;
 
@@ -41,6 +43,36 @@ public interface IStorageControllerContainer {
      * @return true if this is an item based access to the controller, false if it is a block.
      */
     boolean isContainerItem();
+
+    /**
+     * @return the stack version the client of this container was last sent, -1 if none.
+     */
+    long getSyncedStackVersion();
+
+    void setSyncedStackVersion(long version);
+
+    /**
+     * @return true while a full stack snapshot for the client of this container is being compressed.
+     */
+    boolean isStackSnapshotPending();
+
+    void setStackSnapshotPending(boolean pending);
+
+    /**
+     * @return the page the client of this container views, or null if the client keeps all stacks.
+     */
+    StackPageQuery getStackPageQuery();
+
+    void setStackPageQuery(StackPageQuery query);
+
+    /**
+     * Gets the read-only summary to browse instead of the storage controller. Must never load the controller chunk.
+     *
+     * @return the summary of the linked network if its controller is not loaded, null to use the controller.
+     */
+    default StorageNetworkSummary getUnloadedStorageSummary() {
+        return null;
+    }
     //endregion Getter / Setter
 
     //region Methods
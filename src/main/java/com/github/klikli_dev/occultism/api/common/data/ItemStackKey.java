@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.api.common.data;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+
+/**
+ * Immutable identity of an item stack, made up of item, nbt and capability data, ignoring the count.
+ * Stacks with equal keys can be merged, so keys can be used to index storage contents.
+ * Keys are safe to read from any thread.
+ */
+public final class ItemStackKey {
+    //region Fields
+    private final Item item;
+    private final CompoundNBT tag;
+    private final int hash;
+    /**
+     * Also carries the capability data, which is compared by equals but not part of the hash.
+     */
+    private final ItemStack prototype;
+    //endregion Fields
+
+    //region Initialization
+    private ItemStackKey(ItemStack prototype) {
+        this.item = prototype.getItem();
+        this.tag = prototype.getTag();
+        this.hash = 31 * this.item.hashCode() + Objects.hashCode(this.tag);
+        this.prototype = prototype;
+    }
+    //endregion Initialization
+
+    //region Static Methods
+
+    /**
+     * Creates the key for the given stack. The stack is copied once, including nbt and capability data, so later
+     * changes to the stack do not affect the key.
+     *
+     * @param stack the stack to create the key for.
+     * @return the key.
+     */
+    public static ItemStackKey of(@Nonnull ItemStack stack) {
+        if (stack.isEmpty())
+            return new ItemStackKey(ItemStack.EMPTY);
+        //the copy owns its nbt, so the key can share it with the prototype: neither is modified afterwards.
+        ItemStack prototype = stack.copy();
+        prototype.setCount(1);
+        return new ItemStackKey(prototype);
+    }
+
+    /**
+     * Creates a key for looking up the given stack without copying it.
+     * The key must not be stored and is only valid as long as the stack is not modified.
+     *
+     * @param stack the stack to look up.
+     * @return the lookup key.
+     */
+    public static ItemStackKey probe(@Nonnull ItemStack stack) {
+        return new ItemStackKey(stack);
+    }
+    //endregion Static Methods
+
+    //region Getter / Setter
+    public Item getItem() {
+        return this.item;
+    }
+
+    /**
+     * @return a stack of size 1 representing this key, or the looked up stack for probe keys. Do not modify!
+     */
+    public ItemStack getPrototype() {
+        return this.prototype;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+        ItemStackKey other = (ItemStackKey) obj;
+        return this.hash == other.hash && this.item == other.item && Objects.equals(this.tag, other.tag) &&
+                this.prototype.areCapsCompatible(other.prototype);
+    }
+
+    @Override
+    public String toString() {
+        return this.item.getRegistryName() + (this.tag == null ? "" : this.tag.toString());
+    }
+    //endregion Overrides
+
+    //region Methods
+
+    /**
+     * @param stack the stack to check.
+     * @return true if the given stack has the same item, nbt and capability data as this key.
+     */
+    public boolean matches(@Nonnull ItemStack stack) {
+        return !stack.isEmpty() && stack.getItem() == this.item && Objects.equals(this.tag, stack.getTag()) &&
+                this.prototype.areCapsCompatible(stack);
+    }
+
+    /**
+     * @param count the stack size.
+     * @return a new stack with this key's item, nbt and capability data and the given count.
+     */
+    public ItemStack toStack(int count) {
+        ItemStack stack = this.getPrototype().copy();
+        stack.setCount(count);
+        return stack;
+    }
+    //endregion Methods
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.api.common.data;
+
+import net.minecraft.network.PacketBuffer;
+
+import java.util.Objects;
+
+/**
+ * A window into the filtered and sorted stacks of a storage controller, used by clients that do not keep all stacks.
+ */
+public final class StackPageQuery {
+    //region Fields
+    public static final int MAX_SEARCH_LENGTH = 30;
+    public static final int MAX_COUNT = 256;
+
+    private final String searchText;
+    private final SortType sortType;
+    private final SortDirection sortDirection;
+    private final int offset;
+    private final int count;
+    //endregion Fields
+
+    //region Initialization
+    public StackPageQuery(String searchText, SortType sortType, SortDirection sortDirection, int offset, int count) {
+        this.searchText = searchText == null ? "" : searchText;
+        //values come from the client, so fall back to defaults instead of trusting them
+        this.sortType = sortType == null ? SortType.AMOUNT : sortType;
+        this.sortDirection = sortDirection == null ? SortDirection.DOWN : sortDirection;
+        this.offset = Math.max(offset, 0);
+        this.count = Math.max(Math.min(count, MAX_COUNT), 0);
+    }
+    //endregion Initialization
+
+    //region Static Methods
+    public static StackPageQuery decode(PacketBuffer buf) {
+        return new StackPageQuery(buf.readUtf(MAX_SEARCH_LENGTH), SortType.get(buf.readByte()),
+                SortDirection.get(buf.readByte()), buf.readVarInt(), buf.readVarInt());
+    }
+    //endregion Static Methods
+
+    //region Getter / Setter
+    public String getSearchText() {
+        return this.searchText;
+    }
+
+    public SortType getSortType() {
+        return this.sortType;
+    }
+
+    public SortDirection getSortDirection() {
+        return this.sortDirection;
+    }
+
+    public int getOffset() {
+        return this.offset;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+        StackPageQuery other = (StackPageQuery) obj;
+        return this.offset == other.offset && this.count == other.count && this.sortType == other.sortType &&
+                this.sortDirection == other.sortDirection && this.searchText.equals(other.searchText);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.searchText, this.sortType, this.sortDirection, this.offset, this.count);
+    }
+    //endregion Overrides
+
+    //region Methods
+    public void encode(PacketBuffer buf) {
+        buf.writeUtf(this.searchText, MAX_SEARCH_LENGTH);
+        buf.writeByte(this.sortType.getValue());
+        buf.writeByte(this.sortDirection.getValue());
+        buf.writeVarInt(this.offset);
+        buf.writeVarInt(this.count);
+    }
+    //endregion Methods
+}
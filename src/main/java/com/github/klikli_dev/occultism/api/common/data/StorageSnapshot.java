@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.api.common.data;
+
+import net.minecraft.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the aggregated contents of a storage controller at a given stack version.
+ * Snapshots are never modified after creation, so they can be read from any thread without locking.
+ */
+public final class StorageSnapshot {
+    //region Fields
+    public static final StorageSnapshot EMPTY = new StorageSnapshot(-1, Collections.emptyMap(), 0);
+
+    private final long version;
+    private final Map<ItemStackKey, Long> counts;
+    private final int usedSlots;
+    //endregion Fields
+
+    //region Initialization
+    private StorageSnapshot(long version, Map<ItemStackKey, Long> counts, int usedSlots) {
+        this.version = version;
+        this.counts = counts;
+        this.usedSlots = usedSlots;
+    }
+    //endregion Initialization
+
+    //region Static Methods
+
+    /**
+     * Creates a snapshot from the given counts.
+     *
+     * @param version   the stack version the counts belong to.
+     * @param counts    the stored amount per key. Must not be modified afterwards.
+     * @param usedSlots the used slots.
+     * @return the snapshot.
+     */
+    public static StorageSnapshot of(long version, Map<ItemStackKey, Long> counts, int usedSlots) {
+        return new StorageSnapshot(version, Collections.unmodifiableMap(counts), usedSlots);
+    }
+    //endregion Static Methods
+
+    //region Getter / Setter
+    public long getVersion() {
+        return this.version;
+    }
+
+    public int getUsedSlots() {
+        return this.usedSlots;
+    }
+
+    /**
+     * @return the stored keys, in a stable order.
+     */
+    public Set<ItemStackKey> getKeys() {
+        return this.counts.keySet();
+    }
+
+    /**
+     * @param key the key.
+     * @return the stored amount of the given key, 0 if none is stored.
+     */
+    public long getCount(ItemStackKey key) {
+        return this.counts.getOrDefault(key, 0L);
+    }
+
+    public int size() {
+        return this.counts.size();
+    }
+    //endregion Getter / Setter
+
+    //region Methods
+
+    /**
+     * @return the stored amount of all keys combined.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (long count : this.counts.values())
+            total += count;
+        return total;
+    }
+
+    /**
+     * @return new stacks for all stored keys, counts capped at Integer.MAX_VALUE.
+     */
+    public List<ItemStack> toStacks() {
+        List<ItemStack> stacks = new ArrayList<>(this.counts.size());
+        for (Map.Entry<ItemStackKey, Long> entry : this.counts.entrySet()) {
+            stacks.add(entry.getKey().toStack((int) Math.min(entry.getValue(), Integer.MAX_VALUE)));
+        }
+        return stacks;
+    }
+    //endregion Methods
+}
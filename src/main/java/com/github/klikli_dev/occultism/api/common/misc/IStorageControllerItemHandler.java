@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.api.common.misc;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraftforge.common.util.INBTSerializable;
+
+/**
+ * Backing storage of a storage controller, persisted with the controller contents.
+ */
+public interface IStorageControllerItemHandler extends IStorageNetworkItemHandler, INBTSerializable<CompoundNBT> {
+    //region Getter / Setter
+
+    /**
+     * @param size the amount of slots (or item types, depending on the implementation) available.
+     */
+    void setSize(int size);
+    //endregion Getter / Setter
+
+    //region Methods
+
+    /**
+     * Performs defragmentation, such as merging partially filled slots of the same item, for up to the given time.
+     * Called during idle ticks. Only the layout changes, not the stored amounts, so the controller is not notified.
+     *
+     * @param budgetNanos the time to spend in nanoseconds.
+     * @return true if there is work left.
+     */
+    boolean compact(long budgetNanos);
+    //endregion Methods
+}
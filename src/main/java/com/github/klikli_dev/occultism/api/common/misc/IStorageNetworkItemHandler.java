@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.api.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.items.IItemHandlerModifiable;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Item handler view of the items stored in a storage network.
+ * The item handler methods are the view used by pipes and other automation,
+ * the controller itself works with the stack based methods.
+ */
+public interface IStorageNetworkItemHandler extends IItemHandlerModifiable {
+    //region Getter / Setter
+
+    /**
+     * @return the amount of slots (or item types, depending on the implementation) in use.
+     */
+    int getUsedSlots();
+
+    /**
+     * @return the keys of all stored items. Maintained incrementally, do not modify!
+     */
+    Set<ItemStackKey> getStoredKeys();
+
+    /**
+     * @return the amount of stored keys, without building the key set.
+     */
+    int getStoredKeyCount();
+
+    /**
+     * @param key the key to get the count for.
+     * @return the total stored amount for the given key, across all slots.
+     */
+    long getCount(ItemStackKey key);
+    //endregion Getter / Setter
+
+    //region Methods
+
+    /**
+     * Inserts the given stack.
+     *
+     * @param stack    the stack to insert.
+     * @param simulate true to simulate.
+     * @return the remainder that could not be inserted.
+     */
+    ItemStack insertStack(@Nonnull ItemStack stack, boolean simulate);
+
+    /**
+     * Extracts up to the requested amount of the first stored item that matches the comparator.
+     *
+     * @param comparator    the comparator to match against.
+     * @param requestedSize the amount to extract.
+     * @param simulate      true to simulate.
+     * @return the extracted stack.
+     */
+    ItemStack extractStack(Predicate<ItemStack> comparator, int requestedSize, boolean simulate);
+
+    /**
+     * Puts back items whose extraction is rolled back. Unlike insertion this ignores the capacity, the handler grows
+     * oversized if needed, so rolled back items are never lost.
+     *
+     * @param key    the key of the items.
+     * @param amount the amount to put back.
+     */
+    void restoreStack(ItemStackKey key, int amount);
+
+    /**
+     * Gets the total amount of all stored items matching the given comparator.
+     *
+     * @param comparator the comparator to match against.
+     * @return the total amount.
+     */
+    int getAvailableAmount(Predicate<ItemStack> comparator);
+    //endregion Methods
+}
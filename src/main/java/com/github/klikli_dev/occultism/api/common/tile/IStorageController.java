@@ -24,8 +24,16 @@ package com.github.klikli_dev.occultism.api.common.tile;
 
 import com.github.klikli_dev.occultism.api.common.container.IItemStackComparator;
 import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
 import com.github.klikli_dev.occultism.api.common.data.MachineReference;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
+import com.github.klikli_dev.occultism.api.common.data.StorageSnapshot;
+import com.github.klikli_dev.occultism.common.misc.StorageKeyDictionary;
+import com.github.klikli_dev.occultism.common.misc.StorageTransaction;
+import com.github.klikli_dev.occultism.network.MessageBase;
+import com.github.klikli_dev.occultism.network.MessageUpdateStackPage;
 import com.github.klikli_dev.occultism.network.MessageUpdateStacks;
+import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.item.ItemStack;
 
 import java.util.List;
@@ -45,11 +53,46 @@ public interface IStorageController {
     List<ItemStack> getStacks();
 
     /**
-     * Gets a message to update stacks, re-uses cached messages whenever possible
+     * Gets an immutable snapshot of the stored items.
+     * On the server thread a new snapshot is published if the contents changed since the last one, off-thread
+     * readers get the last published snapshot, which may be outdated. Safe to call from any thread.
      *
+     * @return the snapshot.
+     */
+    StorageSnapshot getStackSnapshot();
+
+    /**
+     * Gets a message containing all stacks, encoded for the given dictionary.
+     * The message is compressed asynchronously, see {@link MessageUpdateStacks#isReady()}.
+     *
+     * @param dictionary the item key dictionary of the receiving player.
      * @return the stack update message.
      */
-    MessageUpdateStacks getMessageUpdateStacks();
+    MessageUpdateStacks getMessageUpdateStacks(StorageKeyDictionary dictionary);
+
+    /**
+     * @return the current stack version, increased whenever the stored items change.
+     */
+    long getStackVersion();
+
+    /**
+     * Gets the message to bring a client that knows the stacks at the given version up to date.
+     * This is a delta message if possible, otherwise a full stack update.
+     *
+     * @param knownVersion the stack version known to the client, -1 if it knows none.
+     * @param dictionary   the item key dictionary of the receiving player.
+     * @return the message to send, or null if the client is up to date.
+     */
+    MessageBase getStackSyncMessage(long knownVersion, StorageKeyDictionary dictionary);
+
+    /**
+     * Gets the message containing only the stacks in the window of the given query, searched and sorted server side.
+     *
+     * @param query      the page query.
+     * @param dictionary the item key dictionary of the receiving player.
+     * @return the page message.
+     */
+    MessageUpdateStackPage getStackPageMessage(StackPageQuery query, StorageKeyDictionary dictionary);
 
     /**
      * @return the max slots available in this storage controller.
@@ -75,10 +118,27 @@ public interface IStorageController {
      * @param machines @return a list of tile entity references for the machines liked for autocrafting
      */
     void setLinkedMachines(Map<GlobalBlockPos, MachineReference> machines);
+
+    /**
+     * @return the version of the linked machines, increased by every added, removed or renamed machine.
+     */
+    long getLinkedMachinesVersion();
     //endregion Getter / Setter
 
     //region Methods
 
+    /**
+     * Registers the given player as viewer, viewers are sent stack and linked machine updates as they happen.
+     *
+     * @param player the player that opened a container for this controller.
+     */
+    void addViewer(ServerPlayerEntity player);
+
+    /**
+     * @param player the player to no longer send updates to.
+     */
+    void removeViewer(ServerPlayerEntity player);
+
     /**
      * @param machine the machine to add
      */
@@ -133,6 +193,16 @@ public interface IStorageController {
      */
     ItemStack getItemStack(Predicate<ItemStack> comparator, int requestedSize, boolean simulate);
 
+    /**
+     * Opens a transaction to perform many insertions and extractions with a single change notification.
+     * The transaction must be closed in the same tick, use try-with-resources. Not committing it rolls it back
+     * without notifying anyone, so it can be used to plan an operation and commit the plan if it works out.
+     *
+     * @return the transaction.
+     * @throws IllegalStateException if a transaction is already open.
+     */
+    StorageTransaction beginTransaction();
+
     /**
      * Gets the available amount of the matching item stack in the controller.
      *
@@ -142,8 +212,16 @@ public interface IStorageController {
     int getAvailableAmount(IItemStackComparator comparator);
 
     /**
-     * Called when the contents of the storage controller change.
+     * Called when the contents of the storage controller change as a whole, e.g. when loaded.
      */
     void onContentsChanged();
+
+    /**
+     * Called when the stored amount of the given item changes.
+     * May be called many times per tick, implementations should collect the keys and process them once per tick.
+     *
+     * @param key the key of the changed item.
+     */
+    void onContentsChanged(ItemStackKey key);
     //endregion Methods
 }
@@ -31,13 +31,13 @@ import com.github.klikli_dev.occultism.client.gui.controls.ItemSlotWidget;
 import com.github.klikli_dev.occultism.client.gui.controls.LabelWidget;
 import com.github.klikli_dev.occultism.client.gui.controls.MachineSlotWidget;
 import com.github.klikli_dev.occultism.client.gui.controls.SizedImageButton;
+import com.github.klikli_dev.occultism.client.storage.StorageSearchIndex;
 import com.github.klikli_dev.occultism.common.container.storage.StorageControllerContainerBase;
 import com.github.klikli_dev.occultism.integration.jei.JeiAccess;
 import com.github.klikli_dev.occultism.integration.jei.JeiSettings;
 import com.github.klikli_dev.occultism.network.*;
 import com.github.klikli_dev.occultism.util.InputUtil;
 import com.github.klikli_dev.occultism.util.TextUtil;
-import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.blaze3d.systems.RenderSystem;
@@ -47,7 +47,6 @@ import net.minecraft.client.gui.screen.inventory.ContainerScreen;
 import net.minecraft.client.gui.widget.TextFieldWidget;
 import net.minecraft.client.gui.widget.button.Button;
 import net.minecraft.client.resources.I18n;
-import net.minecraft.client.util.ITooltipFlag;
 import net.minecraft.client.util.InputMappings;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.inventory.IInventory;
@@ -62,11 +61,15 @@ import net.minecraft.util.text.TextFormatting;
 import net.minecraft.util.text.TranslationTextComponent;
 import net.minecraft.world.World;
 
+import javax.annotation.Nullable;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Function;
 
 public abstract class StorageControllerGuiBase<T extends StorageControllerContainerBase> extends ContainerScreen<T> implements IStorageControllerGui, IStorageControllerGuiContainer, IInventoryChangedListener {
     //region Fields
@@ -76,12 +79,36 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     protected static final ResourceLocation BUTTONS = new ResourceLocation(Occultism.MODID, "textures/gui/buttons.png");
     protected static final String TRANSLATION_KEY_BASE = "gui." + Occultism.MODID + ".storage_controller";
     public List<ItemStack> stacks;
+    public Map<Integer, ItemStack> stacksById;
+    public long stackVersion = -1;
+    /**
+     * True if only the visible page of stacks is requested from the server, which also searches and sorts.
+     */
+    public boolean pagedStacks;
+    public int totalStacks;
+    protected StackPageQuery requestedPageQuery;
     public List<MachineReference> linkedMachines;
+    public long linkedMachinesVersion = -1;
     public IStorageControllerContainer storageControllerContainer;
     public int usedSlots;
     public int maxSlots;
     public StorageControllerGuiMode guiMode = StorageControllerGuiMode.INVENTORY;
     protected ItemStack stackUnderMouse = ItemStack.EMPTY;
+    /**
+     * Increased whenever the stacks change, invalidates the cached display list.
+     */
+    protected int stacksRevision;
+    protected StorageSearchIndex searchIndex = new StorageSearchIndex();
+    protected List<ItemStack> displayedStacks;
+    protected int displayedStacksRevision = -1;
+    protected String displayedSearchText;
+    protected SortType displayedSortType;
+    protected SortDirection displayedSortDirection;
+    /**
+     * The list and first index the item slots were built for, they are kept until either changes.
+     */
+    protected List<ItemStack> itemSlotsSource;
+    protected int itemSlotsFirstIndex;
     protected TextFieldWidget searchBar;
     protected List<ItemSlotWidget> itemSlots = new ArrayList<>();
     protected List<MachineSlotWidget> machineSlots = new ArrayList<>();
@@ -120,11 +147,13 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
         this.totalPages = 1;
 
         this.stacks = new ArrayList<>();
+        this.stacksById = new LinkedHashMap<>();
         this.linkedMachines = new ArrayList<>();
 
         this.lastClick = System.currentTimeMillis();
 
-        OccultismPackets.sendToServer(new MessageRequestStacks());
+        this.pagedStacks = Occultism.CLIENT_CONFIG.misc.thinStorageClient.get();
+        OccultismPackets.sendToServer(new MessageRequestStacks(this.pagedStacks));
     }
     //endregion Initialization
 
@@ -184,8 +213,41 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     }
 
     @Override
-    public void setStacks(List<ItemStack> stacks) {
+    public void setStacks(long version, Map<Integer, ItemStack> stacks) {
+        this.stackVersion = version;
+        this.stacksById = stacks;
+        this.stacks = new ArrayList<>(stacks.values());
+        this.stacksRevision++;
+        this.searchIndex.retainAll(stacks.keySet());
+    }
+
+    @Override
+    public long getStackVersion() {
+        return this.stackVersion;
+    }
+
+    @Override
+    public void setStackVersion(long version) {
+        this.stackVersion = version;
+        this.stacks = new ArrayList<>(this.stacksById.values());
+        this.stacksRevision++;
+    }
+
+    @Override
+    public void updateStack(int id, @Nullable ItemStack stack) {
+        if (stack == null) {
+            this.stacksById.remove(id);
+            this.searchIndex.remove(id);
+        } else {
+            this.stacksById.put(id, stack);
+        }
+    }
+
+    @Override
+    public void setStackPage(int offset, int total, List<ItemStack> stacks) {
+        this.totalStacks = total;
         this.stacks = stacks;
+        this.stacksRevision++;
     }
 
     @Override
@@ -208,11 +270,30 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
         this.linkedMachines = machines;
     }
 
+    @Override
+    public long getLinkedMachinesVersion() {
+        return this.linkedMachinesVersion;
+    }
+
+    @Override
+    public void setLinkedMachinesVersion(long version) {
+        this.linkedMachinesVersion = version;
+    }
+
+    @Override
+    public void updateLinkedMachine(GlobalBlockPos position, @Nullable MachineReference machine) {
+        this.linkedMachines.removeIf(linkedMachine -> linkedMachine.globalPos.equals(position));
+        if (machine != null)
+            this.linkedMachines.add(machine);
+    }
+
     @Override
     public void init() {
         super.init();
         this.leftPos = (this.width - this.imageWidth) / 2 - ORDER_AREA_OFFSET;
         this.topPos = (this.height - this.imageHeight) / 2;
+        //slot positions depend on the gui position
+        this.itemSlotsSource = null;
 
         this.buttons.clear();
 
@@ -417,7 +498,9 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     @Override
     public boolean charTyped(char typedChar, int keyCode) {
         if (this.searchBar.isFocused() && this.searchBar.charTyped(typedChar, keyCode)) {
-            OccultismPackets.sendToServer(new MessageRequestStacks());
+            //paged guis request the new search results when drawing
+            if (!this.pagedStacks)
+                OccultismPackets.sendToServer(new MessageRequestStacks());
             if (JeiSettings.isJeiLoaded() && JeiSettings.isJeiSearchSynced()) {
                 JeiAccess.setFilterText(this.searchBar.getValue());
             }
@@ -537,13 +620,30 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     }
 
     protected void drawItems(MatrixStack matrixStack, float partialTicks, int mouseX, int mouseY) {
-        List<ItemStack> stacksToDisplay = this.applySearchToItems();
-        this.sortItemStacks(stacksToDisplay);
+        if (this.pagedStacks) {
+            this.drawItemPage(matrixStack, partialTicks, mouseX, mouseY);
+            return;
+        }
+
+        List<ItemStack> stacksToDisplay = this.getStacksToDisplay();
         this.buildPage(stacksToDisplay);
         this.buildItemSlots(stacksToDisplay);
         this.drawItemSlots(matrixStack, mouseX, mouseY);
     }
 
+    protected void drawItemPage(MatrixStack matrixStack, float partialTicks, int mouseX, int mouseY) {
+        this.buildPage(this.totalStacks);
+        StackPageQuery query = new StackPageQuery(this.searchBar.getValue(), this.getSortType(),
+                this.getSortDirection(), (this.currentPage - 1) * this.columns, this.rows * this.columns);
+        if (!query.equals(this.requestedPageQuery)) {
+            this.requestedPageQuery = query;
+            OccultismPackets.sendToServer(new MessageRequestStackPage(query));
+        }
+        //until the requested page arrives we keep showing the last one.
+        this.buildItemSlots(this.stacks, 0);
+        this.drawItemSlots(matrixStack, mouseX, mouseY);
+    }
+
     protected void drawMachines(MatrixStack matrixStack, float partialTicks, int mouseX, int mouseY) {
         List<MachineReference> machinesToDisplay = this.applySearchToMachines();
         this.sortMachines(machinesToDisplay);
@@ -660,12 +760,20 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     }
 
     protected void buildItemSlots(List<ItemStack> stacksToDisplay) {
+        this.buildItemSlots(stacksToDisplay, (this.currentPage - 1) * (this.columns));
+    }
+
+    protected void buildItemSlots(List<ItemStack> stacksToDisplay, int firstIndex) {
+        if (stacksToDisplay == this.itemSlotsSource && firstIndex == this.itemSlotsFirstIndex)
+            return;
+        this.itemSlotsSource = stacksToDisplay;
+        this.itemSlotsFirstIndex = firstIndex;
 
         int itemAreaLeft = 8 + ORDER_AREA_OFFSET;
         int itemAreaTop = 24;
 
         this.itemSlots = new ArrayList<>();
-        int index = (this.currentPage - 1) * (this.columns);
+        int index = firstIndex;
         for (int row = 0; row < this.rows; row++) {
             if (index >= stacksToDisplay.size()) {
                 break;
@@ -685,8 +793,12 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     }
 
     protected void buildPage(List<?> objectsToDisplay) {
-        this.totalPages = objectsToDisplay.size() / this.columns;
-        if (objectsToDisplay.size() % this.columns != 0) {
+        this.buildPage(objectsToDisplay.size());
+    }
+
+    protected void buildPage(int objectCount) {
+        this.totalPages = objectCount / this.columns;
+        if (objectCount % this.columns != 0) {
             this.totalPages++;
         }
         this.totalPages -= (this.rows - 1);
@@ -702,43 +814,59 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
     }
 
     protected void sortItemStacks(List<ItemStack> stacksToDisplay) {
-        stacksToDisplay.sort(new Comparator<ItemStack>() {
+        final int direction = this.getSortDirection().isDown() ? -1 : 1;
+        switch (this.getSortType()) {
+            case AMOUNT:
+                stacksToDisplay.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()) * direction);
+                break;
+            case NAME:
+                this.sortItemStacks(stacksToDisplay, stack -> stack.getHoverName().getContents(), direction);
+                break;
+            case MOD:
+                this.sortItemStacks(stacksToDisplay, stack -> TextUtil.getModNameForGameObject(stack.getItem()),
+                        direction);
+                break;
+        }
+    }
 
-            //region Fields
-            final int direction = StorageControllerGuiBase.this.getSortDirection().isDown() ? -1 : 1;
-            //endregion Fields
+    /**
+     * Sorts by a text key that is computed once per stack instead of once per comparison.
+     */
+    protected void sortItemStacks(List<ItemStack> stacksToDisplay, Function<ItemStack, String> keyFunction,
+                                  int direction) {
+        Map<ItemStack, String> keys = new IdentityHashMap<>(stacksToDisplay.size());
+        for (ItemStack stack : stacksToDisplay) {
+            keys.put(stack, keyFunction.apply(stack));
+        }
+        stacksToDisplay.sort((a, b) -> keys.get(a).compareToIgnoreCase(keys.get(b)) * direction);
+    }
 
-            //region Overrides
-            @Override
-            public int compare(ItemStack a, ItemStack b) {
-                switch (StorageControllerGuiBase.this.getSortType()) {
-                    case AMOUNT:
-                        return Integer.compare(b.getCount(), a.getCount()) * this.direction;
-                    case NAME:
-                        return a.getHoverName().getContents()
-                                .compareToIgnoreCase(b.getHoverName().getContents()) *
-                                this.direction;
-                    case MOD:
-                        return TextUtil.getModNameForGameObject(a.getItem())
-                                .compareToIgnoreCase(TextUtil.getModNameForGameObject(b.getItem())) *
-                                this.direction;
-                }
-                return 0;
-            }
-            //endregion Overrides
-        });
+    /**
+     * Gets the searched and sorted stacks, only recomputed if the stacks, search text or sorting changed.
+     *
+     * @return the stacks to display. Do not modify!
+     */
+    protected List<ItemStack> getStacksToDisplay() {
+        String searchText = this.searchBar.getValue();
+        if (this.displayedStacks == null || this.displayedStacksRevision != this.stacksRevision ||
+                !searchText.equals(this.displayedSearchText) || this.displayedSortType != this.getSortType() ||
+                this.displayedSortDirection != this.getSortDirection()) {
+            List<ItemStack> stacksToDisplay = this.applySearchToItems();
+            this.sortItemStacks(stacksToDisplay);
+            this.displayedStacks = stacksToDisplay;
+            this.displayedStacksRevision = this.stacksRevision;
+            this.displayedSearchText = searchText;
+            this.displayedSortType = this.getSortType();
+            this.displayedSortDirection = this.getSortDirection();
+        }
+        return this.displayedStacks;
     }
 
     protected List<ItemStack> applySearchToItems() {
         String searchText = this.searchBar.getValue();
 
         if (!searchText.equals("")) {
-            List<ItemStack> stacksToDisplay = new ArrayList<>();
-            for (ItemStack stack : this.stacks) {
-                if (this.itemMatchesSearch(stack))
-                    stacksToDisplay.add(stack);
-            }
-            return stacksToDisplay;
+            return this.searchIndex.search(this.stacksById, searchText);
         }
         return new ArrayList<>(this.stacks);
     }
@@ -758,30 +886,6 @@ public abstract class StorageControllerGuiBase<T extends StorageControllerContai
         return new ArrayList<>(this.linkedMachines);
     }
 
-    protected boolean itemMatchesSearch(ItemStack stack) {
-        String searchText = this.searchBar.getValue();
-        if (searchText.startsWith("@")) {
-            String name = TextUtil.getModNameForGameObject(stack.getItem());
-            return name.toLowerCase().contains(searchText.toLowerCase().substring(1));
-        } else if (searchText.startsWith("#")) {
-            List<String> tooltip = stack.getTooltipLines(this.minecraft.player, ITooltipFlag.TooltipFlags.NORMAL).stream()
-                    .map(ITextComponent::getString).collect(
-                            Collectors.toList());
-            String tooltipString = Joiner.on(' ').join(tooltip).toLowerCase().trim();
-            return tooltipString.toLowerCase().contains(searchText.toLowerCase().substring(1));
-        } else if (searchText.startsWith("$")) {
-            StringBuilder tagStringBuilder = new StringBuilder();
-            for (ResourceLocation tag : stack.getItem().getTags()) {
-                tagStringBuilder.append(tag.toString()).append(' ');
-            }
-            return tagStringBuilder.toString().toLowerCase().contains(searchText.toLowerCase().substring(1));
-        } else {
-            //Note: If search stops working, forge may have re-implemented .getUnformattedComponentText() for translated text components
-            return stack.getHoverName().getString().toLowerCase()
-                    .contains(searchText.toLowerCase());
-        }
-    }
-
     protected boolean machineMatchesSearch(MachineReference machine) {
         String searchText = this.searchBar.getValue();
         if (searchText.startsWith("@")) {
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.client.storage;
+
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client side half of the per connection item key dictionary, see
+ * {@link com.github.klikli_dev.occultism.common.misc.StorageKeyDictionary}.
+ * Only accessed from the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientStorageKeyDictionary {
+
+    //region Fields
+    private static final Map<Integer, ItemStack> DEFINITIONS = new HashMap<>();
+    //endregion Fields
+
+    //region Static Methods
+
+    /**
+     * Stores the item the server assigned the given id to.
+     *
+     * @param id         the id.
+     * @param definition the item and nbt, count is ignored.
+     */
+    public static void define(int id, ItemStack definition) {
+        DEFINITIONS.put(id, definition);
+    }
+
+    /**
+     * @param id    the id.
+     * @param count the stack size.
+     * @return a new stack for the given id, or null if the id has not been defined.
+     */
+    @Nullable
+    public static ItemStack createStack(int id, int count) {
+        ItemStack definition = DEFINITIONS.get(id);
+        if (definition == null)
+            return null;
+        ItemStack stack = definition.copy();
+        stack.setCount(count);
+        return stack;
+    }
+
+    /**
+     * Forgets all definitions, used when the connection is closed.
+     */
+    public static void clear() {
+        DEFINITIONS.clear();
+    }
+    //endregion Static Methods
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.client.storage;
+
+import com.github.klikli_dev.occultism.util.TextUtil;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.util.ITooltipFlag;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Search texts of the stacks shown in a storage gui, keyed by item key dictionary id.
+ * Each text is computed once per item the first time a search needs it and kept until the item leaves the storage,
+ * so searching by tooltip (#) or tag ($) does not rebuild tooltips and tag lists on every frame.
+ */
+@OnlyIn(Dist.CLIENT)
+public class StorageSearchIndex {
+
+    //region Fields
+    protected Map<Integer, Entry> entries = new HashMap<>();
+    //endregion Fields
+
+    //region Methods
+
+    /**
+     * Gets the stacks matching the given search text.
+     * Supports @ for mod names, # for tooltips, $ for tags, otherwise searches item names.
+     *
+     * @param stacks     the stacks by item key dictionary id.
+     * @param searchText the search text as typed.
+     * @return a new list of the matching stacks.
+     */
+    public List<ItemStack> search(Map<Integer, ItemStack> stacks, String searchText) {
+        char mode = searchText.isEmpty() ? ' ' : searchText.charAt(0);
+        boolean prefixed = mode == '@' || mode == '#' || mode == '$';
+        String text = (prefixed ? searchText.substring(1) : searchText).toLowerCase(Locale.ROOT);
+
+        List<ItemStack> result = new ArrayList<>();
+        for (Map.Entry<Integer, ItemStack> stack : stacks.entrySet()) {
+            Entry entry = this.entries.computeIfAbsent(stack.getKey(), id -> new Entry(stack.getValue()));
+            String searched;
+            switch (mode) {
+                case '@':
+                    searched = entry.getModName();
+                    break;
+                case '#':
+                    searched = entry.getTooltip();
+                    break;
+                case '$':
+                    searched = entry.getTags();
+                    break;
+                default:
+                    searched = entry.getName();
+                    break;
+            }
+            if (searched.contains(text))
+                result.add(stack.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the texts of all items but the given ones, used when a full set of stacks is received.
+     *
+     * @param ids the item key dictionary ids of the current stacks.
+     */
+    public void retainAll(Collection<Integer> ids) {
+        this.entries.keySet().retainAll(ids);
+    }
+
+    /**
+     * Forgets the texts of a removed item.
+     *
+     * @param id the item key dictionary id.
+     */
+    public void remove(int id) {
+        this.entries.remove(id);
+    }
+    //endregion Methods
+
+    protected static class Entry {
+        //region Fields
+        protected final ItemStack stack;
+        protected String name;
+        protected String modName;
+        protected String tags;
+        protected String tooltip;
+        //endregion Fields
+
+        //region Initialization
+        protected Entry(ItemStack stack) {
+            this.stack = stack;
+        }
+        //endregion Initialization
+
+        //region Getter / Setter
+        protected String getName() {
+            if (this.name == null) {
+                //Note: If search stops working, forge may have re-implemented .getUnformattedComponentText() for translated text components
+                this.name = this.stack.getHoverName().getString().toLowerCase(Locale.ROOT);
+            }
+            return this.name;
+        }
+
+        protected String getModName() {
+            if (this.modName == null) {
+                String modName = TextUtil.getModNameForGameObject(this.stack.getItem());
+                this.modName = modName == null ? "" : modName.toLowerCase(Locale.ROOT);
+            }
+            return this.modName;
+        }
+
+        protected String getTags() {
+            if (this.tags == null) {
+                StringBuilder tags = new StringBuilder();
+                for (ResourceLocation tag : this.stack.getItem().getTags()) {
+                    tags.append(tag.toString()).append(' ');
+                }
+                this.tags = tags.toString().toLowerCase(Locale.ROOT);
+            }
+            return this.tags;
+        }
+
+        protected String getTooltip() {
+            if (this.tooltip == null) {
+                StringBuilder tooltip = new StringBuilder();
+                for (ITextComponent line : this.stack.getTooltipLines(Minecraft.getInstance().player,
+                        ITooltipFlag.TooltipFlags.NORMAL)) {
+                    tooltip.append(line.getString()).append(' ');
+                }
+                this.tooltip = tooltip.toString().toLowerCase(Locale.ROOT).trim();
+            }
+            return this.tooltip;
+        }
+        //endregion Getter / Setter
+    }
+}
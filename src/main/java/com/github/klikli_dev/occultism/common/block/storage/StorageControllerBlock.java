@@ -22,14 +22,17 @@
 
 package com.github.klikli_dev.occultism.common.block.storage;
 
+import com.github.klikli_dev.occultism.common.tile.StorageControllerTileEntity;
 import com.github.klikli_dev.occultism.registry.OccultismTiles;
 import com.github.klikli_dev.occultism.util.TileEntityUtil;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.client.util.ITooltipFlag;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.container.INamedContainerProvider;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ActionResultType;
 import net.minecraft.util.Hand;
@@ -39,10 +42,15 @@ import net.minecraft.util.math.shapes.IBooleanFunction;
 import net.minecraft.util.math.shapes.ISelectionContext;
 import net.minecraft.util.math.shapes.VoxelShape;
 import net.minecraft.util.math.shapes.VoxelShapes;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraft.util.text.TranslationTextComponent;
 import net.minecraft.world.IBlockReader;
 import net.minecraft.world.World;
 import net.minecraftforge.fml.network.NetworkHooks;
 
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.stream.Stream;
 
 public class StorageControllerBlock extends Block {
@@ -70,6 +78,12 @@ public class StorageControllerBlock extends Block {
 
     @Override
     public void onRemove(BlockState state, World worldIn, BlockPos pos, BlockState newState, boolean isMoving) {
+        //the dropped item only references the network, the contents stay in the saved data.
+        if (state.getBlock() != newState.getBlock()) {
+            TileEntity tileEntity = worldIn.getBlockEntity(pos);
+            if (tileEntity instanceof StorageControllerTileEntity)
+                ((StorageControllerTileEntity) tileEntity).releaseContents();
+        }
         TileEntityUtil.onBlockChangeDropWithNbt(this, state, worldIn, pos, newState);
         super.onRemove(state, worldIn, pos, newState, isMoving);
     }
@@ -79,6 +93,18 @@ public class StorageControllerBlock extends Block {
                                 Hand handIn, BlockRayTraceResult rayTraceResult) {
         if (!world.isClientSide) {
             TileEntity tileEntity = world.getBlockEntity(pos);
+            if (tileEntity instanceof StorageControllerTileEntity) {
+                StorageControllerTileEntity controller = (StorageControllerTileEntity) tileEntity;
+                //shards are accessed through their primary controller, as long as it is loaded.
+                if (controller.getLinkedStorageController() != controller) {
+                    String formattedPosition = TextFormatting.GOLD.toString() + TextFormatting.BOLD +
+                            controller.getLinkedStorageControllerPosition().getPos().toString() +
+                            TextFormatting.RESET;
+                    player.displayClientMessage(new TranslationTextComponent(
+                            this.getDescriptionId() + ".message.shard", formattedPosition), true);
+                    return ActionResultType.SUCCESS;
+                }
+            }
             if (tileEntity instanceof INamedContainerProvider) {
                 NetworkHooks.openGui((ServerPlayerEntity) player, (INamedContainerProvider) tileEntity, pos);
             }
@@ -86,9 +112,28 @@ public class StorageControllerBlock extends Block {
         return ActionResultType.SUCCESS;
     }
 
+    @Override
+    public void appendHoverText(ItemStack stack, @Nullable IBlockReader worldIn, List<ITextComponent> tooltip,
+                                ITooltipFlag flagIn) {
+        super.appendHoverText(stack, worldIn, tooltip, flagIn);
+        CompoundNBT blockEntityTag = stack.getTagElement("BlockEntityTag");
+        if (blockEntityTag != null && blockEntityTag.contains("storedTypes")) {
+            tooltip.add(new TranslationTextComponent(this.getDescriptionId() + ".tooltip.contents",
+                    blockEntityTag.getInt("storedTypes"), blockEntityTag.getLong("storedCount")));
+        }
+    }
+
     @Override
     public ItemStack getCloneItemStack(IBlockReader worldIn, BlockPos pos, BlockState state) {
-        return TileEntityUtil.getItemWithNbt(this, worldIn, pos);
+        ItemStack stack = TileEntityUtil.getItemWithNbt(this, worldIn, pos);
+        CompoundNBT blockEntityTag = stack.getTagElement("BlockEntityTag");
+        if (blockEntityTag != null) {
+            //copies never reference the network, it stays with the placed block until that is broken.
+            blockEntityTag.remove("storageId");
+            blockEntityTag.remove("storedTypes");
+            blockEntityTag.remove("storedCount");
+        }
+        return stack;
     }
 
     @Override
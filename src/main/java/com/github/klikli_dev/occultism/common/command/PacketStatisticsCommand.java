@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.command;
+
+import com.github.klikli_dev.occultism.network.PacketStatistics;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.StringTextComponent;
+
+import java.util.List;
+
+/**
+ * Shows the traffic recorded by {@link PacketStatistics}: /occultism packets [players|reset]
+ */
+public class PacketStatisticsCommand {
+
+    //region Static Methods
+    public static ArgumentBuilder<CommandSource, ?> register(CommandDispatcher<CommandSource> dispatcher) {
+        return Commands.literal("packets")
+                .requires(cs -> cs.hasPermission(2))
+                .executes(context -> report(context, "Occultism packets by message type:",
+                        PacketStatistics.getMessageReport()))
+                .then(Commands.literal("players")
+                        .executes(context -> report(context, "Occultism packets by player:",
+                                PacketStatistics.getPlayerReport())))
+                .then(Commands.literal("reset")
+                        .executes(PacketStatisticsCommand::reset));
+    }
+
+    protected static int report(CommandContext<CommandSource> context, String title, List<String> lines) {
+        if (lines.isEmpty()) {
+            context.getSource().sendSuccess(new StringTextComponent("No Occultism packets sent yet."), false);
+            return 0;
+        }
+        context.getSource().sendSuccess(new StringTextComponent(title), false);
+        for (String line : lines) {
+            context.getSource().sendSuccess(new StringTextComponent(line), false);
+        }
+        return lines.size();
+    }
+
+    protected static int reset(CommandContext<CommandSource> context) {
+        PacketStatistics.reset();
+        context.getSource().sendSuccess(new StringTextComponent("Occultism packet statistics reset."), true);
+        return 0;
+    }
+    //endregion Static Methods
+}
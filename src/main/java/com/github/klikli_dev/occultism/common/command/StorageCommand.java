@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.command;
+
+import com.github.klikli_dev.occultism.common.misc.StorageControllerReleasedData;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.StringTextComponent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage maintenance: /occultism storage purge &lt;days&gt; deletes the networks of storage controllers that were
+ * broken at least the given amount of days ago and have not been placed again since.
+ */
+public class StorageCommand {
+
+    //region Static Methods
+    public static ArgumentBuilder<CommandSource, ?> register(CommandDispatcher<CommandSource> dispatcher) {
+        return Commands.literal("storage")
+                .requires(cs -> cs.hasPermission(3))
+                .then(Commands.literal("purge")
+                        .then(Commands.argument("days", IntegerArgumentType.integer(0))
+                                .executes(StorageCommand::purge)));
+    }
+
+    protected static int purge(CommandContext<CommandSource> context) {
+        int days = IntegerArgumentType.getInteger(context, "days");
+        long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days);
+        int purged = StorageControllerReleasedData.get(context.getSource().getServer())
+                .purge(context.getSource().getServer(), before);
+        context.getSource().sendSuccess(new StringTextComponent(
+                "Purged " + purged + " storage networks released more than " + days + " days ago."), true);
+        return purged;
+    }
+    //endregion Static Methods
+}
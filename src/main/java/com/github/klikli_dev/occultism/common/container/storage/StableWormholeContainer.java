@@ -27,16 +27,12 @@ import com.github.klikli_dev.occultism.client.gui.storage.StorageControllerGuiBa
 import com.github.klikli_dev.occultism.common.misc.StorageControllerCraftingInventory;
 import com.github.klikli_dev.occultism.common.tile.StableWormholeTileEntity;
 import com.github.klikli_dev.occultism.common.tile.StorageControllerTileEntity;
-import com.github.klikli_dev.occultism.network.MessageUpdateLinkedMachines;
-import com.github.klikli_dev.occultism.network.OccultismPackets;
 import com.github.klikli_dev.occultism.registry.OccultismContainers;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
-import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.container.Slot;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.World;
 
 
 public class StableWormholeContainer extends StorageControllerContainerBase {
@@ -121,13 +117,6 @@ public class StableWormholeContainer extends StorageControllerContainerBase {
     public boolean stillValid(PlayerEntity player) {
         if (this.storageController == null || this.stableWormhole == null)
             return false;
-        World world = this.stableWormhole.getLevel();
-        //send stack updates on a slow tick while interacting
-        if (!world.isClientSide && world.getGameTime() % 40 == 0) {
-            OccultismPackets.sendTo((ServerPlayerEntity) player, this.storageController.getMessageUpdateStacks());
-            OccultismPackets.sendTo((ServerPlayerEntity) player,
-                    new MessageUpdateLinkedMachines(this.storageController.getLinkedMachines()));
-        }
         BlockPos wormholePosition = this.stableWormhole.getBlockPos();
         return player.distanceToSqr(wormholePosition.getX() + 0.5D, wormholePosition.getY() + 0.5D,
                 wormholePosition.getZ() + 0.5D) <= 64.0D;
@@ -24,12 +24,13 @@ package com.github.klikli_dev.occultism.common.container.storage;
 
 import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
 import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
 import com.github.klikli_dev.occultism.client.gui.storage.StorageControllerGuiBase;
 import com.github.klikli_dev.occultism.common.misc.ItemStackComparator;
 import com.github.klikli_dev.occultism.common.misc.StorageControllerCraftingInventory;
 import com.github.klikli_dev.occultism.common.misc.StorageControllerSlot;
-import com.github.klikli_dev.occultism.network.OccultismPackets;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.entity.player.ServerPlayerEntity;
@@ -68,6 +69,10 @@ public abstract class StorageControllerContainerBase extends Container implement
      * used to lock recipe while crafting
      */
     protected boolean recipeLocked = false;
+
+    protected long syncedStackVersion = -1;
+    protected boolean stackSnapshotPending;
+    protected StackPageQuery stackPageQuery;
     //endregion Fields
 
     //region Initialization
@@ -91,6 +96,36 @@ public abstract class StorageControllerContainerBase extends Container implement
                 (TileEntity) this.getStorageController());
     }
 
+    @Override
+    public long getSyncedStackVersion() {
+        return this.syncedStackVersion;
+    }
+
+    @Override
+    public void setSyncedStackVersion(long version) {
+        this.syncedStackVersion = version;
+    }
+
+    @Override
+    public boolean isStackSnapshotPending() {
+        return this.stackSnapshotPending;
+    }
+
+    @Override
+    public void setStackSnapshotPending(boolean pending) {
+        this.stackSnapshotPending = pending;
+    }
+
+    @Override
+    public StackPageQuery getStackPageQuery() {
+        return this.stackPageQuery;
+    }
+
+    @Override
+    public void setStackPageQuery(StackPageQuery query) {
+        this.stackPageQuery = query;
+    }
+
     @Override
     public CraftingInventory getCraftMatrix() {
         return this.matrix;
@@ -142,7 +177,7 @@ public abstract class StorageControllerContainerBase extends Container implement
                 this.broadcastChanges();
 
                 //get updated stacks from storage controller and send to client
-                OccultismPackets.sendTo((ServerPlayerEntity) player, storageController.getMessageUpdateStacks());
+                StorageUtil.syncStacks((ServerPlayerEntity) player);
 
                 if (!remainingItemStack.isEmpty()) {
                     slot.onTake(player, slotStack);
@@ -158,11 +193,23 @@ public abstract class StorageControllerContainerBase extends Container implement
         this.updateCraftingSlots(false);
         this.updateOrderSlot(true); //only send network update on second call
         super.removed(playerIn);
+        if (!playerIn.level.isClientSide) {
+            IStorageController storageController = this.getViewedStorageController();
+            if (storageController != null)
+                storageController.removeViewer((ServerPlayerEntity) playerIn);
+        }
     }
 
     //endregion Overrides
 
     //region Methods
+
+    /**
+     * @return the storage controller this container may be registered as viewer with, without loading it.
+     */
+    protected IStorageController getViewedStorageController() {
+        return this.getStorageController();
+    }
     protected void setupPlayerInventorySlots() {
         int playerInventoryTop = 174;
         int playerInventoryLeft = 8 + StorageControllerGuiBase.ORDER_AREA_OFFSET;
@@ -375,7 +422,7 @@ public abstract class StorageControllerContainerBase extends Container implement
 
         //update crafting matrix to handle container items / items that survive crafting
         this.slotsChanged(this.matrix);
-        OccultismPackets.sendTo((ServerPlayerEntity) player, this.getStorageController().getMessageUpdateStacks());
+        StorageUtil.syncStacks((ServerPlayerEntity) player);
 
     }
     //endregion Methods
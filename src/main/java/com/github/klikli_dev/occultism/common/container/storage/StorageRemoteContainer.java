@@ -27,18 +27,23 @@ import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
 import com.github.klikli_dev.occultism.client.gui.storage.StorageControllerGuiBase;
 import com.github.klikli_dev.occultism.common.item.storage.StorageRemoteItem;
 import com.github.klikli_dev.occultism.common.misc.StorageControllerCraftingInventory;
-import com.github.klikli_dev.occultism.network.MessageUpdateLinkedMachines;
-import com.github.klikli_dev.occultism.network.OccultismPackets;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummary;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummarySavedData;
 import com.github.klikli_dev.occultism.registry.OccultismContainers;
 import com.github.klikli_dev.occultism.util.CuriosUtil;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.container.Slot;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.ListNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
 import net.minecraftforge.common.util.Constants;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -46,6 +51,14 @@ import java.util.List;
 public class StorageRemoteContainer extends StorageControllerContainerBase {
     //region Fields
     protected int selectedSlot;
+    /**
+     * The position linked on the storage remote, read from the item nbt once.
+     */
+    protected GlobalBlockPos storageControllerPosition;
+    /**
+     * The resolved storage controller, cleared by the controller when it is unloaded or removed.
+     */
+    protected WeakReference<IStorageController> storageController;
     //endregion Fields
 
     //region Initialization
@@ -85,8 +98,12 @@ public class StorageRemoteContainer extends StorageControllerContainerBase {
 
     @Override
     public GlobalBlockPos getStorageControllerGlobalBlockPos() {
-        ItemStack storageRemote = this.getStorageRemote();
-        return storageRemote != ItemStack.EMPTY ? GlobalBlockPos.from(this.getStorageRemote().getTag().getCompound("linkedStorageController")) : null;
+        if (this.storageControllerPosition == null) {
+            ItemStack storageRemote = this.getStorageRemote();
+            this.storageControllerPosition = storageRemote != ItemStack.EMPTY ?
+                    GlobalBlockPos.from(storageRemote.getTag().getCompound("linkedStorageController")) : null;
+        }
+        return this.storageControllerPosition;
     }
 
     @Override
@@ -129,22 +146,47 @@ public class StorageRemoteContainer extends StorageControllerContainerBase {
 
     @Override
     public boolean stillValid(PlayerEntity entityPlayer) {
-        IStorageController storageController = this.getStorageController();
-        //canInteractWith is constantly called, so we use it to send
-        //stack updates every 40 ticks.
-        if (storageController != null && !entityPlayer.level.isClientSide &&
-                entityPlayer.level.getGameTime() % 40 == 0) {
-            OccultismPackets.sendTo((ServerPlayerEntity) this.player, this.getStorageController().getMessageUpdateStacks());
-            OccultismPackets.sendTo((ServerPlayerEntity) this.player,
-                    new MessageUpdateLinkedMachines(this.getStorageController().getLinkedMachines()));
-        }
-
+        //stack and machine updates are pushed by the storage controller to its viewers.
         return this.getStorageRemote() != ItemStack.EMPTY;
     }
 
     @Override
     public IStorageController getStorageController() {
-        return StorageRemoteItem.getStorageController(this.getStorageRemote(), this.playerInventory.player.level);
+        IStorageController controller = this.getViewedStorageController();
+        if (controller != null)
+            return controller;
+
+        controller = StorageRemoteItem.getStorageController(this.getStorageRemote(), this.playerInventory.player.level);
+        this.storageController = controller != null ? new WeakReference<>(controller) : null;
+        //a reloaded or newly loaded controller does not know this remote yet, so register for its updates.
+        if (controller != null && !this.player.level.isClientSide) {
+            controller.addViewer((ServerPlayerEntity) this.player);
+            //the client may still show the summary of the unloaded network, replace it with the actual contents.
+            StorageUtil.sendStackSnapshot((ServerPlayerEntity) this.player);
+        }
+        return controller;
+    }
+
+    @Override
+    public StorageNetworkSummary getUnloadedStorageSummary() {
+        if (this.player.level.isClientSide || this.getViewedStorageController() != null)
+            return null;
+
+        GlobalBlockPos position = this.getStorageControllerGlobalBlockPos();
+        if (position == null)
+            return null;
+        MinecraftServer server = this.player.level.getServer();
+        World world = server.getLevel(position.getDimensionKey());
+        if (world != null && world.isLoaded(position.getPos()))
+            return null;
+        return StorageNetworkSummarySavedData.get(server, position);
+    }
+
+    @Override
+    protected IStorageController getViewedStorageController() {
+        //only the already resolved controller, resolving it could load its chunk
+        IStorageController controller = this.storageController != null ? this.storageController.get() : null;
+        return controller != null && !((TileEntity) controller).isRemoved() ? controller : null;
     }
 
     @Override
@@ -172,6 +214,15 @@ public class StorageRemoteContainer extends StorageControllerContainerBase {
     //endregion Overrides
 
     //region Methods
+
+    /**
+     * Clears the resolved storage controller, it will be resolved from the storage remote again on next access.
+     * Called by the storage controller when it is unloaded or removed.
+     */
+    public void invalidateStorageController() {
+        this.storageController = null;
+    }
+
     protected List<ItemStack> getCraftingMatrixFromItemStack(ItemStack stack) {
         List<ItemStack> craftingMatrix = new ArrayList<>(Collections.nCopies(9, ItemStack.EMPTY));
         if (!stack.getOrCreateTag().contains("craftingMatrix"))
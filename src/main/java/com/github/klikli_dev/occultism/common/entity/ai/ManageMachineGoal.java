@@ -28,6 +28,7 @@ import com.github.klikli_dev.occultism.api.common.tile.IStorageControllerProxy;
 import com.github.klikli_dev.occultism.common.entity.spirit.SpiritEntity;
 import com.github.klikli_dev.occultism.common.job.ManageMachineJob;
 import com.github.klikli_dev.occultism.common.misc.DepositOrder;
+import com.github.klikli_dev.occultism.common.misc.StorageTransaction;
 import com.github.klikli_dev.occultism.exceptions.ItemHandlerMissingException;
 import com.github.klikli_dev.occultism.util.Math3DUtil;
 import net.minecraft.block.BlockState;
@@ -130,24 +131,22 @@ public class ManageMachineGoal extends Goal {
                     MachineReference machineReference = this.job.getManagedMachine();
                     if (tileEntity instanceof IStorageControllerProxy && currentOrder != null) {
                         //if we reached the storage controller proxy, we take out items as per our order
-                        ItemStack itemToExtract = this.job.getStorageController()
-                                .getItemStack(currentOrder.comparator, currentOrder.amount,
-                                        true);
                         IItemHandler handler = this.entity.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY,
                                 Direction.UP).orElseThrow(ItemHandlerMissingException::new);
-                        if (!itemToExtract.isEmpty() &&
-                                ItemHandlerHelper.insertItem(handler, itemToExtract, true).isEmpty()) {
-                            //we can insert all, so we can perform for real now
-                            ItemStack extracted = this.job.getStorageController()
-                                    .getItemStack(currentOrder.comparator, currentOrder.amount,
-                                            false);
-                            ItemHandlerHelper.insertItem(handler, extracted, false);
-
-                            //job fulfilled, deposit ai will take over
-                            this.entity.setDepositPosition(machineReference.globalPos.getPos());
-                            this.entity.setDepositFacing(machineReference.insertFacing);
-                            this.job.setCurrentDepositOrder(null);
-                            this.targetBlock = null;
+                        //the extraction is only kept if we can carry all of it, otherwise it is rolled back on close
+                        try (StorageTransaction transaction = this.job.getStorageController().beginTransaction()) {
+                            ItemStack extracted = transaction.extract(currentOrder.comparator, currentOrder.amount);
+                            if (!extracted.isEmpty() &&
+                                    ItemHandlerHelper.insertItem(handler, extracted, true).isEmpty()) {
+                                ItemHandlerHelper.insertItem(handler, extracted, false);
+                                transaction.commit();
+
+                                //job fulfilled, deposit ai will take over
+                                this.entity.setDepositPosition(machineReference.globalPos.getPos());
+                                this.entity.setDepositFacing(machineReference.insertFacing);
+                                this.job.setCurrentDepositOrder(null);
+                                this.targetBlock = null;
+                            }
                         }
                     } else if (this.targetBlock.equals(machineReference.globalPos.getPos())) {
                         //if we reached the machine, we take out the result
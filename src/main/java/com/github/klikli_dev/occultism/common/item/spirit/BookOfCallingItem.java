@@ -24,7 +24,6 @@ package com.github.klikli_dev.occultism.common.item.spirit;
 
 import com.github.klikli_dev.occultism.Occultism;
 import com.github.klikli_dev.occultism.TranslationKeys;
-import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
 import com.github.klikli_dev.occultism.api.common.data.MachineReference;
 import com.github.klikli_dev.occultism.api.common.data.WorkAreaSize;
 import com.github.klikli_dev.occultism.api.common.item.IHandleItemMode;
@@ -35,6 +34,7 @@ import com.github.klikli_dev.occultism.common.entity.spirit.SpiritEntity;
 import com.github.klikli_dev.occultism.common.job.ManageMachineJob;
 import com.github.klikli_dev.occultism.util.EntityUtil;
 import com.github.klikli_dev.occultism.util.ItemNBTUtil;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import com.github.klikli_dev.occultism.util.TextUtil;
 import com.github.klikli_dev.occultism.util.TileEntityUtil;
 import net.minecraft.client.util.ITooltipFlag;
@@ -383,7 +383,8 @@ public class BookOfCallingItem extends Item implements IIngredientCopyNBT, IHand
             if (boundSpirit.isPresent() && boundSpirit.get().getJob().isPresent()) {
                 if (boundSpirit.get().getJob().get() instanceof ManageMachineJob) {
                     ManageMachineJob job = (ManageMachineJob) boundSpirit.get().getJob().get();
-                    job.setStorageControllerPosition(new GlobalBlockPos(pos, world));
+                    //shards resolve to the primary controller of their network.
+                    job.setStorageControllerPosition(StorageUtil.getNetworkPosition(world.getBlockEntity(pos)));
                     //write data into item nbt for client side usage
                     ItemNBTUtil.updateItemNBTFromEntity(stack, boundSpirit.get());
 
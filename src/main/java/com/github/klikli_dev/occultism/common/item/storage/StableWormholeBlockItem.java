@@ -24,6 +24,7 @@ package com.github.klikli_dev.occultism.common.item.storage;
 
 import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import net.minecraft.block.Block;
 import net.minecraft.client.util.ITooltipFlag;
 import net.minecraft.entity.player.PlayerEntity;
@@ -68,8 +69,10 @@ public class StableWormholeBlockItem extends BlockItem {
                 TileEntity tileEntity = world.getBlockEntity(pos);
                 if (tileEntity instanceof IStorageController) {
                     //if this is a storage controller, write the position into the block entity tag that will be used to spawn the tile entity.
+                    //shards resolve to the primary controller of their network.
                     stack.getOrCreateTagElement("BlockEntityTag")
-                            .put("linkedStorageControllerPosition", GlobalBlockPos.from(tileEntity).serializeNBT());
+                            .put("linkedStorageControllerPosition",
+                                    StorageUtil.getNetworkPosition(tileEntity).serializeNBT());
                     player.displayClientMessage(
                             new TranslationTextComponent(this.getDescriptionId() + ".message.set_storage_controller"),
                             true);
@@ -25,7 +25,10 @@ package com.github.klikli_dev.occultism.common.item.storage;
 import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
 import com.github.klikli_dev.occultism.common.container.storage.StorageRemoteContainer;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummary;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummarySavedData;
 import com.github.klikli_dev.occultism.util.CuriosUtil;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import com.github.klikli_dev.occultism.util.TileEntityUtil;
 import net.minecraft.client.util.ITooltipFlag;
 import net.minecraft.entity.player.PlayerEntity;
@@ -87,7 +90,8 @@ public class StorageRemoteItem extends Item implements INamedContainerProvider {
             ItemStack stack = context.getItemInHand();
             TileEntity tileEntity = context.getLevel().getBlockEntity(context.getClickedPos());
             if (tileEntity instanceof IStorageController) {
-                stack.addTagElement("linkedStorageController", GlobalBlockPos.from(tileEntity).serializeNBT());
+                stack.addTagElement("linkedStorageController",
+                        StorageUtil.getNetworkPosition(tileEntity).serializeNBT());
                 context.getPlayer()
                         .sendMessage(new TranslationTextComponent(this.getDescriptionId() + ".message.linked"),
                                 Util.NIL_UUID);
@@ -108,8 +112,17 @@ public class StorageRemoteItem extends Item implements INamedContainerProvider {
                 stack.getTag().getCompound("linkedStorageController"));
         World storageControllerWorld = world.getServer().getLevel(storageControllerPos.getDimensionKey());
 
-        //ensure TE is available
+        //ensure TE is available, unloaded networks can still be browsed if a summary is known.
         if (!storageControllerWorld.hasChunkAt(storageControllerPos.getPos())) {
+            StorageNetworkSummary summary = StorageNetworkSummarySavedData.get(world.getServer(), storageControllerPos);
+            if (summary != null) {
+                player.sendMessage(new TranslationTextComponent(this.getDescriptionId() + ".message.summary",
+                        summary.getSnapshot().size(), summary.getStoredTypes(), summary.getStoredCount()),
+                        Util.NIL_UUID);
+                NetworkHooks.openGui((ServerPlayerEntity) player, this,
+                        buffer -> buffer.writeVarInt(player.inventory.selected));
+                return new ActionResult<>(ActionResultType.SUCCESS, stack);
+            }
             player.sendMessage(new TranslationTextComponent(this.getDescriptionId() + ".message.not_loaded"), Util.NIL_UUID);
             return super.use(world, player, hand);
         }
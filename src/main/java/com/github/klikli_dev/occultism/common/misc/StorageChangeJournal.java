@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records which stored items of a storage controller changed at which version, so viewers that already know the
+ * contents at an older version only need to be sent the items that changed since.
+ */
+public class StorageChangeJournal {
+
+    //region Fields
+    /**
+     * The amount of changes to keep. Viewers that are further behind get a full snapshot instead.
+     */
+    public static final int MAX_CHANGES = 4096;
+
+    /**
+     * Each journal starts its versions at a different base, so a version known for one journal (e.g. before the
+     * controller chunk was reloaded) can never be mistaken for a version of another journal.
+     */
+    private static final AtomicLong VERSION_BASE = new AtomicLong();
+
+    protected long version;
+    protected long keySetVersion;
+    protected long oldestVersion;
+    protected Map<ItemStackKey, KeyState> states = new HashMap<>();
+    protected ArrayDeque<Change> changes = new ArrayDeque<>();
+    //endregion Fields
+
+    //region Initialization
+    public StorageChangeJournal() {
+        this.version = reserveVersionBase();
+        this.oldestVersion = this.version;
+    }
+    //endregion Initialization
+
+    //region Static Methods
+
+    /**
+     * Reserves a new range of versions that is not used by any other journal.
+     *
+     * @return the first version of the range.
+     */
+    public static long reserveVersionBase() {
+        return VERSION_BASE.getAndAdd(1L << 32);
+    }
+    //endregion Static Methods
+
+    //region Getter / Setter
+
+    /**
+     * @return the current version, increased by every recorded change.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return the version the set of stored keys last changed at, count changes do not affect it.
+     */
+    public long getKeySetVersion() {
+        return this.keySetVersion;
+    }
+    //endregion Getter / Setter
+
+    //region Methods
+
+    /**
+     * Forgets all changes and starts over with the given keys, used when the contents are replaced as a whole.
+     * All viewers will receive a full snapshot afterwards.
+     *
+     * @param keys the currently stored keys.
+     */
+    public void reset(Collection<ItemStackKey> keys) {
+        this.version++;
+        this.keySetVersion = this.version;
+        this.oldestVersion = this.version;
+        this.changes.clear();
+        this.states.clear();
+        for (ItemStackKey key : keys) {
+            KeyState state = new KeyState(key);
+            state.present = true;
+            state.changedVersion = this.version;
+            this.states.put(key, state);
+        }
+    }
+
+    /**
+     * Records a change of the stored amount of the given key.
+     *
+     * @param key     the changed key.
+     * @param present true if the key is still stored after the change.
+     */
+    public void record(ItemStackKey key, boolean present) {
+        this.version++;
+        KeyState state = this.states.get(key);
+        if (state == null) {
+            state = new KeyState(key);
+            this.states.put(key, state);
+        }
+        boolean wasPresent = state.present;
+        if (present != wasPresent)
+            this.keySetVersion = this.version;
+        state.present = present;
+        state.changedVersion = this.version;
+
+        this.changes.addLast(new Change(this.version, state, wasPresent));
+        while (this.changes.size() > MAX_CHANGES) {
+            Change dropped = this.changes.removeFirst();
+            this.oldestVersion = dropped.version;
+            //removed keys are only kept around as long as a viewer may still need to be told about the removal.
+            if (!dropped.state.present && dropped.state.changedVersion == dropped.version)
+                this.states.remove(dropped.state.key, dropped.state);
+        }
+    }
+
+    /**
+     * Gets the keys that changed after the given version.
+     * Keys that were neither stored at the given version nor are now are left out, the viewer never saw them.
+     *
+     * @param knownVersion the version the viewer knows.
+     * @return the changed keys, each only once, or null if the version is too old or unknown to this journal.
+     */
+    public Collection<KeyState> getChangesSince(long knownVersion) {
+        if (knownVersion < this.oldestVersion || knownVersion > this.version)
+            return null;
+
+        //walking backwards, the last change seen per key is the first one after the known version.
+        Map<ItemStackKey, Change> firstChanges = new LinkedHashMap<>();
+        Iterator<Change> iterator = this.changes.descendingIterator();
+        while (iterator.hasNext()) {
+            Change change = iterator.next();
+            if (change.version <= knownVersion)
+                break;
+            firstChanges.put(change.state.key, change);
+        }
+
+        List<KeyState> changed = new ArrayList<>(firstChanges.size());
+        for (Change change : firstChanges.values()) {
+            if (change.wasPresent || change.state.present)
+                changed.add(change.state);
+        }
+        return changed;
+    }
+    //endregion Methods
+
+    public static class KeyState {
+        //region Fields
+        public final ItemStackKey key;
+        public long changedVersion;
+        public boolean present;
+        //endregion Fields
+
+        //region Initialization
+        protected KeyState(ItemStackKey key) {
+            this.key = key;
+        }
+        //endregion Initialization
+    }
+
+    protected static class Change {
+        //region Fields
+        protected final long version;
+        protected final KeyState state;
+        /**
+         * True if the key was stored right before this change.
+         */
+        protected final boolean wasPresent;
+        //endregion Fields
+
+        //region Initialization
+        protected Change(long version, KeyState state, boolean wasPresent) {
+            this.version = version;
+            this.state = state;
+            this.wasPresent = wasPresent;
+        }
+        //endregion Initialization
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageNetworkItemHandler;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.items.IItemHandler;
+
+import javax.annotation.Nonnull;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Item handler exposed to pipes, hoppers and other automation instead of the full slot view of a storage controller.
+ * Slot 0 accepts any item and inserts it into the network, the following slots each show one stored item and
+ * rotate through the stored contents as they are extracted. This keeps the cost of automation constant,
+ * no matter how many slots the controller has.
+ */
+public class StorageControllerAutomationItemHandler implements IItemHandler {
+
+    //region Fields
+    public static final int INSERT_SLOT = 0;
+
+    protected Supplier<IStorageNetworkItemHandler> handler;
+    protected Predicate<ItemStack> blacklist;
+    /**
+     * The key shown in each extract slot, null if the slot is empty.
+     */
+    protected ItemStackKey[] window;
+    protected ItemStackComparator[] comparators;
+    /**
+     * The stored keys at the start of the current rotation, refreshed once all of them were shown.
+     */
+    protected ItemStackKey[] rotation = new ItemStackKey[0];
+    protected int rotationIndex;
+    //endregion Fields
+
+    //region Initialization
+    public StorageControllerAutomationItemHandler(Supplier<IStorageNetworkItemHandler> handler,
+                                                  Predicate<ItemStack> blacklist, int extractSlots) {
+        this.handler = handler;
+        this.blacklist = blacklist;
+        this.window = new ItemStackKey[extractSlots];
+        this.comparators = new ItemStackComparator[extractSlots];
+    }
+    //endregion Initialization
+
+    //region Overrides
+    @Override
+    public int getSlots() {
+        return 1 + this.window.length;
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack getStackInSlot(int slot) {
+        if (slot == INSERT_SLOT)
+            return ItemStack.EMPTY;
+
+        IStorageNetworkItemHandler handler = this.handler.get();
+        ItemStackKey key = this.getWindowKey(handler, slot - 1);
+        if (key == null)
+            return ItemStack.EMPTY;
+        long count = Math.min(handler.getCount(key), key.getPrototype().getMaxStackSize());
+        return key.toStack((int) count);
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack insertItem(int slot, @Nonnull ItemStack stack, boolean simulate) {
+        if (slot != INSERT_SLOT || stack.isEmpty() || this.blacklist.test(stack))
+            return stack;
+        return this.handler.get().insertStack(stack, simulate);
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack extractItem(int slot, int amount, boolean simulate) {
+        if (slot == INSERT_SLOT || amount <= 0)
+            return ItemStack.EMPTY;
+
+        IStorageNetworkItemHandler handler = this.handler.get();
+        int windowSlot = slot - 1;
+        ItemStackKey key = this.getWindowKey(handler, windowSlot);
+        if (key == null)
+            return ItemStack.EMPTY;
+
+        amount = Math.min(amount, key.getPrototype().getMaxStackSize());
+        ItemStack extracted = handler.extractStack(this.comparators[windowSlot], amount, simulate);
+        if (!simulate && !extracted.isEmpty()) {
+            //move on to the next stored item, so automation pulling from one slot cycles through the contents
+            this.window[windowSlot] = null;
+        }
+        return extracted;
+    }
+
+    @Override
+    public int getSlotLimit(int slot) {
+        return 64;
+    }
+
+    @Override
+    public boolean isItemValid(int slot, @Nonnull ItemStack stack) {
+        return slot == INSERT_SLOT && !this.blacklist.test(stack);
+    }
+    //endregion Overrides
+
+    //region Methods
+
+    /**
+     * Gets the key shown in the given extract slot, filling the slot with the next stored key if it is empty or the
+     * shown key ran out.
+     *
+     * @param handler    the handler of the storage network.
+     * @param windowSlot the index of the extract slot.
+     * @return the key, or null if there is no stored key left to show.
+     */
+    protected ItemStackKey getWindowKey(IStorageNetworkItemHandler handler, int windowSlot) {
+        if (windowSlot < 0 || windowSlot >= this.window.length)
+            return null;
+
+        ItemStackKey key = this.window[windowSlot];
+        if (key != null && handler.getCount(key) > 0)
+            return key;
+
+        key = this.nextKey(handler);
+        this.window[windowSlot] = key;
+        this.comparators[windowSlot] = key == null ? null : new ItemStackComparator(key.getPrototype(), true);
+        return key;
+    }
+
+    /**
+     * Advances the rotation to the next stored key that is not shown in another slot yet.
+     * The stored keys are copied once per rotation, so the cost per call stays constant on average.
+     *
+     * @param handler the handler of the storage network.
+     * @return the next key, or null if all stored keys are already shown.
+     */
+    protected ItemStackKey nextKey(IStorageNetworkItemHandler handler) {
+        boolean refreshed = false;
+        while (true) {
+            if (this.rotationIndex >= this.rotation.length) {
+                if (refreshed)
+                    return null;
+                this.rotation = handler.getStoredKeys().toArray(new ItemStackKey[0]);
+                this.rotationIndex = 0;
+                refreshed = true;
+                continue;
+            }
+
+            ItemStackKey key = this.rotation[this.rotationIndex++];
+            if (handler.getCount(key) > 0 && !this.isShown(key))
+                return key;
+        }
+    }
+
+    /**
+     * @param key the key.
+     * @return true if the key is shown in one of the extract slots.
+     */
+    protected boolean isShown(ItemStackKey key) {
+        for (ItemStackKey shown : this.window) {
+            if (key.equals(shown))
+                return true;
+        }
+        return false;
+    }
+    //endregion Methods
+}
@@ -0,0 +1,487 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageControllerItemHandler;
+import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.items.ItemHandlerHelper;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Slotless storage controller backend, storing one entry with a total count per item type.
+ * Capacity is expressed in item types and total items, the item handler view exposes one slot per stored type
+ * plus one empty slot to insert new types into.
+ */
+public class StorageControllerCountedItemHandler implements IStorageControllerItemHandler {
+
+    //region Fields
+    protected IStorageController storageController;
+    protected int maxTypes;
+    protected int maxStackSize;
+    protected long totalCount;
+    /**
+     * The stored entries in item handler slot order. Removed entries leave a null gap, so the slots of the other
+     * entries do not shift. The last element is never null.
+     */
+    protected List<Entry> entries = new ArrayList<>();
+    /**
+     * The gaps in the entries, filled by new types before appending and closed by compaction.
+     */
+    protected BitSet freeIndices = new BitSet();
+    protected Map<ItemStackKey, Entry> entriesByKey = new HashMap<>();
+    /**
+     * All keys currently stored for each item, used to resolve comparators that ignore nbt.
+     */
+    protected Map<Item, Set<ItemStackKey>> keysByItem = new HashMap<>();
+    /**
+     * The serialized entries, only pages with changed entries are serialized again on save.
+     */
+    protected StoragePageCache pageCache = new StoragePageCache();
+    //endregion Fields
+
+    //region Initialization
+    public StorageControllerCountedItemHandler(IStorageController storageController, int maxTypes, int maxStackSize) {
+        this.storageController = storageController;
+        this.maxTypes = maxTypes;
+        this.maxStackSize = maxStackSize;
+    }
+    //endregion Initialization
+
+    //region Getter / Setter
+
+    /**
+     * @return the total amount of items that can be stored, derived from the available types.
+     */
+    public long getMaxItems() {
+        return (long) this.maxTypes * this.maxStackSize;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+    @Override
+    public void setSize(int size) {
+        //types above the new size are kept, they just cannot be replaced by new types once they are used up.
+        this.maxTypes = Math.max(size, 0);
+    }
+
+    @Override
+    public int getUsedSlots() {
+        return this.entriesByKey.size();
+    }
+
+    @Override
+    public Set<ItemStackKey> getStoredKeys() {
+        return Collections.unmodifiableSet(this.entriesByKey.keySet());
+    }
+
+    @Override
+    public int getStoredKeyCount() {
+        return this.entriesByKey.size();
+    }
+
+    @Override
+    public long getCount(ItemStackKey key) {
+        Entry entry = this.entriesByKey.get(key);
+        return entry == null ? 0 : entry.count;
+    }
+
+    @Override
+    public int getSlots() {
+        return this.entriesByKey.size() < this.maxTypes ? this.entries.size() + 1 : this.entries.size();
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack getStackInSlot(int slot) {
+        Entry entry = this.getEntry(slot);
+        return entry == null ? ItemStack.EMPTY : entry.key.toStack((int) Math.min(entry.count, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void setStackInSlot(int slot, @Nonnull ItemStack stack) {
+        if (slot < 0 || slot >= this.getSlots())
+            throw new RuntimeException("Slot " + slot + " not in valid range - [0," + this.getSlots() + ")");
+
+        Entry oldEntry = this.getEntry(slot);
+        if (oldEntry != null && oldEntry.key.matches(stack)) {
+            //same type, only the count changes
+            this.totalCount += stack.getCount() - oldEntry.count;
+            oldEntry.count = stack.getCount();
+            this.onContentsChanged(oldEntry.key);
+            return;
+        }
+
+        if (oldEntry != null)
+            this.removeEntry(oldEntry);
+        if (!stack.isEmpty()) {
+            //replace the entry in place. A type stored in another slot is moved here, as each type has one entry.
+            ItemStackKey key = ItemStackKey.of(stack);
+            Entry entry = this.entriesByKey.get(key);
+            if (entry == null)
+                entry = this.createEntry(key);
+            else
+                this.vacate(entry.index);
+            this.place(entry, slot);
+            entry.count += stack.getCount();
+            this.totalCount += stack.getCount();
+            this.onContentsChanged(entry.key);
+        }
+        if (oldEntry != null)
+            this.onContentsChanged(oldEntry.key);
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack insertItem(int slot, @Nonnull ItemStack stack, boolean simulate) {
+        if (stack.isEmpty() || slot < 0 || slot >= this.getSlots())
+            return stack;
+        //slots of stored types only accept their own type, new types go into free slots.
+        Entry entry = this.getEntry(slot);
+        if (entry != null && !entry.key.matches(stack))
+            return stack;
+        return this.insert(stack, simulate, slot);
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack extractItem(int slot, int amount, boolean simulate) {
+        Entry entry = this.getEntry(slot);
+        if (amount <= 0 || entry == null)
+            return ItemStack.EMPTY;
+
+        int toExtract = (int) Math.min(Math.min(amount, entry.key.getPrototype().getMaxStackSize()), entry.count);
+        if (!simulate)
+            this.shrinkEntry(entry, toExtract);
+        return entry.key.toStack(toExtract);
+    }
+
+    @Override
+    public int getSlotLimit(int slot) {
+        return (int) Math.min(this.getMaxItems(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isItemValid(int slot, @Nonnull ItemStack stack) {
+        return true;
+    }
+
+    @Override
+    public ItemStack insertStack(@Nonnull ItemStack stack, boolean simulate) {
+        return this.insert(stack, simulate, -1);
+    }
+
+    @Override
+    public ItemStack extractStack(Predicate<ItemStack> comparator, int requestedSize, boolean simulate) {
+        if (requestedSize <= 0 || comparator == null)
+            return ItemStack.EMPTY;
+
+        //prefer the matching entry that comes first in slot order, same as the slot based backend.
+        Entry entry = null;
+        for (ItemStackKey candidate : this.getCandidateKeys(comparator)) {
+            Entry candidateEntry = this.entriesByKey.get(candidate);
+            if ((entry == null || candidateEntry.index < entry.index) && comparator.test(candidate.getPrototype()))
+                entry = candidateEntry;
+        }
+        if (entry == null)
+            return ItemStack.EMPTY;
+
+        int toExtract = (int) Math.min(requestedSize, entry.count);
+        ItemStackKey key = entry.key;
+        if (!simulate)
+            this.shrinkEntry(entry, toExtract);
+        return key.toStack(toExtract);
+    }
+
+    @Override
+    public void restoreStack(ItemStackKey key, int amount) {
+        //the type limit is ignored, like for loaded contents, so rolled back items are never lost.
+        Entry entry = this.getOrCreateEntry(key);
+        entry.count += amount;
+        this.totalCount += amount;
+        this.onContentsChanged(entry.key);
+    }
+
+    @Override
+    public int getAvailableAmount(Predicate<ItemStack> comparator) {
+        if (comparator == null)
+            return 0;
+
+        long totalCount = 0;
+        for (ItemStackKey key : this.getCandidateKeys(comparator)) {
+            if (comparator.test(key.getPrototype()))
+                totalCount += this.entriesByKey.get(key).count;
+        }
+        return (int) Math.min(totalCount, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean compact(long budgetNanos) {
+        //close the gaps left by removed entries by moving the last entries into them.
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < budgetNanos) {
+            int gap = this.freeIndices.nextSetBit(0);
+            if (gap < 0)
+                return false;
+            Entry last = this.entries.get(this.entries.size() - 1);
+            this.vacate(last.index);
+            this.place(last, gap);
+        }
+        return !this.freeIndices.isEmpty();
+    }
+
+    @Override
+    public CompoundNBT serializeNBT() {
+        CompoundNBT nbt = new CompoundNBT();
+        nbt.put("EntryPages", this.pageCache.serialize(this.entries.size(), (page, i) -> {
+            Entry entry = this.entries.get(i);
+            if (entry == null)
+                return;
+            //the prototype carries the capability data of the key, so ForgeCaps are saved and restored by ItemStack.of
+            CompoundNBT entryTag = entry.key.getPrototype().save(new CompoundNBT());
+            entryTag.putLong("RealCount", entry.count);
+            page.add(entryTag);
+        }));
+        nbt.putInt("Size", this.maxTypes);
+        return nbt;
+    }
+
+    @Override
+    public void deserializeNBT(CompoundNBT nbt) {
+        this.entries.clear();
+        this.freeIndices.clear();
+        this.entriesByKey.clear();
+        this.keysByItem.clear();
+        this.totalCount = 0;
+        this.pageCache.markAllDirty();
+
+        //older saves store all entries in a single list
+        ListNBT entryList = nbt.getList("Entries", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < entryList.size(); i++) {
+            this.loadEntry(entryList.getCompound(i));
+        }
+        StoragePageCache.forEach(StoragePageCache.getPages(nbt, "EntryPages"), this::loadEntry);
+
+        //contents written by the slot based backend, merge the slots into entries.
+        ListNBT tagList = nbt.getList("Items", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < tagList.size(); i++) {
+            this.loadSlot(tagList.getCompound(i));
+        }
+        StoragePageCache.forEach(StoragePageCache.getPages(nbt, "ItemPages"), this::loadSlot);
+    }
+    //endregion Overrides
+
+    //region Methods
+    protected void onContentsChanged(ItemStackKey key) {
+        Entry entry = this.entriesByKey.get(key);
+        if (entry != null)
+            this.pageCache.markDirty(entry.index);
+        this.storageController.onContentsChanged(key);
+    }
+
+    /**
+     * Gets the keys that may match the given comparator.
+     * Item stack comparators are resolved via the index, any other predicate has to be tested against all keys.
+     *
+     * @param comparator the comparator.
+     * @return the keys to test the comparator against.
+     */
+    protected Collection<ItemStackKey> getCandidateKeys(Predicate<ItemStack> comparator) {
+        if (comparator instanceof ItemStackComparator) {
+            ItemStackComparator itemStackComparator = (ItemStackComparator) comparator;
+            ItemStack filterStack = itemStackComparator.getFilterStack();
+            if (filterStack.isEmpty())
+                return Collections.emptyList();
+
+            if (itemStackComparator.getMatchNbt()) {
+                ItemStackKey key = ItemStackKey.of(filterStack);
+                return this.entriesByKey.containsKey(key) ? Collections.singletonList(key) : Collections.emptyList();
+            }
+            return this.keysByItem.getOrDefault(filterStack.getItem(), Collections.emptySet());
+        }
+        return this.entriesByKey.keySet();
+    }
+
+    protected void loadEntry(CompoundNBT entryTag) {
+        this.addLoadedStack(ItemStack.of(entryTag), entryTag.getLong("RealCount"));
+    }
+
+    protected void loadSlot(CompoundNBT itemTags) {
+        this.addLoadedStack(ItemStack.of(itemTags), itemTags.getInt("RealSize"));
+    }
+
+    protected void addLoadedStack(ItemStack stack, long count) {
+        //loaded contents are always kept, even if they exceed the capacity.
+        if (stack.isEmpty() || count <= 0)
+            return;
+        this.getOrCreateEntry(ItemStackKey.of(stack)).count += count;
+        this.totalCount += count;
+    }
+
+    protected ItemStack insert(@Nonnull ItemStack stack, boolean simulate, int slot) {
+        if (stack.isEmpty())
+            return stack;
+
+        Entry entry = this.entriesByKey.get(ItemStackKey.probe(stack));
+        if (entry == null && this.entriesByKey.size() >= this.maxTypes)
+            return stack;
+
+        int toInsert = (int) Math.min(stack.getCount(), this.getMaxItems() - this.totalCount);
+        if (toInsert <= 0)
+            return stack;
+
+        if (!simulate) {
+            if (entry == null) {
+                //new types go into the requested free slot, otherwise into the first gap or at the end.
+                entry = this.createEntry(ItemStackKey.of(stack));
+                this.place(entry, slot >= 0 && this.getEntry(slot) == null ? slot : this.getFreeIndex());
+            }
+            entry.count += toInsert;
+            this.totalCount += toInsert;
+            this.onContentsChanged(entry.key);
+        }
+        return toInsert == stack.getCount() ? ItemStack.EMPTY :
+                ItemHandlerHelper.copyStackWithSize(stack, stack.getCount() - toInsert);
+    }
+
+    /**
+     * @param slot the slot.
+     * @return the entry in the given slot, or null if the slot is empty.
+     */
+    protected Entry getEntry(int slot) {
+        return slot >= 0 && slot < this.entries.size() ? this.entries.get(slot) : null;
+    }
+
+    protected int getFreeIndex() {
+        int index = this.freeIndices.nextSetBit(0);
+        return index < 0 ? this.entries.size() : index;
+    }
+
+    protected Entry getOrCreateEntry(ItemStackKey key) {
+        Entry entry = this.entriesByKey.get(key);
+        if (entry == null) {
+            entry = this.createEntry(key);
+            this.place(entry, this.getFreeIndex());
+        }
+        return entry;
+    }
+
+    /**
+     * Creates and indexes a new entry. The caller has to place it into a slot.
+     *
+     * @param key the key of the entry.
+     * @return the entry.
+     */
+    protected Entry createEntry(ItemStackKey key) {
+        Entry entry = new Entry(key, -1);
+        this.entriesByKey.put(key, entry);
+        this.keysByItem.computeIfAbsent(key.getItem(), item -> new HashSet<>()).add(key);
+        return entry;
+    }
+
+    /**
+     * Puts the entry into the given empty slot, appending gaps if the slot is beyond the current entries.
+     *
+     * @param entry the entry.
+     * @param index the slot.
+     */
+    protected void place(Entry entry, int index) {
+        while (this.entries.size() <= index) {
+            this.freeIndices.set(this.entries.size());
+            this.entries.add(null);
+        }
+        this.entries.set(index, entry);
+        this.freeIndices.clear(index);
+        entry.index = index;
+        this.pageCache.markDirty(index);
+    }
+
+    /**
+     * Empties the given slot, trailing gaps are removed.
+     *
+     * @param index the slot.
+     */
+    protected void vacate(int index) {
+        this.entries.set(index, null);
+        this.freeIndices.set(index);
+        this.pageCache.markDirty(index);
+        while (!this.entries.isEmpty() && this.entries.get(this.entries.size() - 1) == null) {
+            int last = this.entries.size() - 1;
+            this.entries.remove(last);
+            this.freeIndices.clear(last);
+            this.pageCache.markDirty(last);
+        }
+    }
+
+    protected void shrinkEntry(Entry entry, int amount) {
+        entry.count -= amount;
+        this.totalCount -= amount;
+        if (entry.count <= 0)
+            this.removeEntry(entry);
+        this.onContentsChanged(entry.key);
+    }
+
+    protected void removeEntry(Entry entry) {
+        this.totalCount -= entry.count;
+        entry.count = 0;
+
+        //leave a gap, so removal does not change the slots of other entries.
+        this.vacate(entry.index);
+
+        this.entriesByKey.remove(entry.key);
+        Set<ItemStackKey> itemKeys = this.keysByItem.get(entry.key.getItem());
+        if (itemKeys != null) {
+            itemKeys.remove(entry.key);
+            if (itemKeys.isEmpty())
+                this.keysByItem.remove(entry.key.getItem());
+        }
+    }
+    //endregion Methods
+
+    protected static class Entry {
+        //region Fields
+        protected final ItemStackKey key;
+        protected long count;
+        protected int index;
+        //endregion Fields
+
+        //region Initialization
+        protected Entry(ItemStackKey key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+        //endregion Initialization
+    }
+}
@@ -22,24 +22,62 @@
 
 package com.github.klikli_dev.occultism.common.misc;
 
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageControllerItemHandler;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
 import com.github.klikli_dev.occultism.common.data.NonNullArrayList;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.nbt.ListNBT;
 import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.items.ItemHandlerHelper;
 import net.minecraftforge.items.ItemStackHandler;
 
 import javax.annotation.Nonnull;
-import java.util.Collections;
+import java.util.*;
+import java.util.function.Predicate;
 
-public class StorageControllerItemStackHandler extends ItemStackHandler {
+public class StorageControllerItemStackHandler extends ItemStackHandler implements IStorageControllerItemHandler {
 
     //region Fields
     protected int maxStackSize;
     protected int maxSlots;
     protected boolean overrideItemStackSizes;
     protected IStorageController storageController;
+
+    /**
+     * The key of the stack in each slot, null for empty slots. Always has the same size as stacks.
+     */
+    protected List<ItemStackKey> slotKeys = new ArrayList<>();
+    /**
+     * The count of the stack in each slot as of the last index update, used to maintain the totals per key.
+     */
+    protected int[] slotCounts = new int[0];
+    /**
+     * The occupied slots and the total count for each key.
+     */
+    protected Map<ItemStackKey, IndexEntry> index = new HashMap<>();
+    /**
+     * All keys currently stored for each item, used to resolve comparators that ignore nbt.
+     */
+    protected Map<Item, Set<ItemStackKey>> keysByItem = new HashMap<>();
+    /**
+     * Set bits represent empty slots.
+     */
+    protected BitSet emptySlots = new BitSet();
+    /**
+     * The keys that are spread over more than one partially filled slot, these are merged by compaction.
+     */
+    protected Set<ItemStackKey> fragmentedKeys = new HashSet<>();
+    /**
+     * The serialized slots, only pages with changed slots are serialized again on save.
+     */
+    protected StoragePageCache pageCache = new StoragePageCache();
+    /**
+     * True while compacting, moving stacks does not change the contents so the controller is not notified.
+     */
+    protected boolean compacting;
     //endregion Fields
 
     //region Initialization
@@ -51,6 +89,7 @@ public class StorageControllerItemStackHandler extends ItemStackHandler {
         this.maxSlots = size;
         this.maxStackSize = maxStackSize;
         this.overrideItemStackSizes = overrideItemStackSizes;
+        this.rebuildIndex();
     }
     //endregion Initialization
 
@@ -64,10 +103,14 @@ public class StorageControllerItemStackHandler extends ItemStackHandler {
 
         //if we need to increase, we simply copy to a bigger list
         if (size > this.stacks.size()) {
+            int oldSize = this.stacks.size();
             //add empty item stacks until we are full
-            this.stacks.addAll(Collections.nCopies(size - this.stacks.size(), ItemStack.EMPTY));
+            this.stacks.addAll(Collections.nCopies(size - oldSize, ItemStack.EMPTY));
+            this.slotKeys.addAll(Collections.nCopies(size - oldSize, null));
+            this.slotCounts = Arrays.copyOf(this.slotCounts, size);
+            this.emptySlots.set(oldSize, size);
         }
-        //if list got smaller we prune what wer can, the rest is removed ony by one when a full stack is removed
+        //if list got smaller we prune what we can, the rest is moved down by compaction or freed by extraction
         else if (size < this.stacks.size()) {
             this.prune();
         }
@@ -86,11 +129,9 @@ public class StorageControllerItemStackHandler extends ItemStackHandler {
     public ItemStack extractItem(int slot, int amount, boolean simulate) {
         ItemStack result = super.extractItem(slot, amount, simulate);
 
-        if (!simulate && this.stacks.size() > this.maxSlots) {
-            //in real mode if we are above desired size, delete empty slots.
-            if (this.stacks.get(slot).isEmpty())
-                this.stacks.remove(slot);
-        }
+        //in real mode if we are above desired size, free empty slots at the end.
+        if (!simulate && this.stacks.size() > this.maxSlots)
+            this.prune();
 
         return result;
     }
@@ -108,53 +149,449 @@ public class StorageControllerItemStackHandler extends ItemStackHandler {
 
     @Override
     public CompoundNBT serializeNBT() {
-        ListNBT nbtTagList = new ListNBT();
-        for (int i = 0; i < this.stacks.size(); i++) {
-            if (!this.stacks.get(i).isEmpty()) {
+        CompoundNBT nbt = new CompoundNBT();
+        nbt.put("ItemPages", this.pageCache.serialize(this.stacks.size(), (page, i) -> {
+            ItemStack stack = this.stacks.get(i);
+            if (!stack.isEmpty()) {
                 CompoundNBT itemTag = new CompoundNBT();
-                ItemStack stack = this.stacks.get(i);
                 itemTag.putInt("Slot", i);
                 stack.save(itemTag);
                 itemTag.putInt("RealSize", stack.getCount());
-                nbtTagList.add(itemTag);
+                page.add(itemTag);
             }
-        }
-        CompoundNBT nbt = new CompoundNBT();
-        nbt.put("Items", nbtTagList);
+        }));
         nbt.putInt("Size", this.stacks.size());
         return nbt;
     }
 
     @Override
     public void deserializeNBT(CompoundNBT nbt) {
+        //the contents are replaced, not merged
+        Collections.fill(this.stacks, ItemStack.EMPTY);
         this.setSize(nbt.contains("Size", Constants.NBT.TAG_INT) ? nbt.getInt("Size") : this.stacks.size());
+        //older saves store all slots in a single list
         ListNBT tagList = nbt.getList("Items", Constants.NBT.TAG_COMPOUND);
         for (int i = 0; i < tagList.size(); i++) {
-            CompoundNBT itemTags = tagList.getCompound(i);
-            int slot = itemTags.getInt("Slot");
+            this.loadSlot(tagList.getCompound(i));
+        }
+        StoragePageCache.forEach(StoragePageCache.getPages(nbt, "ItemPages"), this::loadSlot);
 
-            if (slot >= 0 && slot < this.stacks.size()) {
-                ItemStack stack = ItemStack.of(itemTags);
-                stack.setCount(itemTags.getInt("RealSize"));
-                this.stacks.set(slot, stack);
+        //contents written by the counted storage backend, distribute them into slots.
+        List<CompoundNBT> entryTags = new ArrayList<>();
+        ListNBT entryList = nbt.getList("Entries", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < entryList.size(); i++) {
+            entryTags.add(entryList.getCompound(i));
+        }
+        StoragePageCache.forEach(StoragePageCache.getPages(nbt, "EntryPages"), entryTags::add);
+        int cursor = 0;
+        for (CompoundNBT entryTag : entryTags) {
+            ItemStack prototype = ItemStack.of(entryTag);
+            long remaining = entryTag.getLong("RealCount");
+            while (!prototype.isEmpty() && remaining > 0) {
+                ItemStack stack = prototype.copy();
+                stack.setCount((int) Math.min(remaining, this.getStackLimit(cursor, prototype)));
+                remaining -= stack.getCount();
+                while (cursor < this.stacks.size() && !this.stacks.get(cursor).isEmpty())
+                    cursor++;
+                //if we run out of slots we grow oversized, just like when stabilizers are removed.
+                if (cursor < this.stacks.size())
+                    this.stacks.set(cursor, stack);
+                else
+                    this.stacks.add(stack);
             }
         }
+        this.rebuildIndex();
         this.onLoad();
     }
 
     @Override
     protected void onContentsChanged(int slot) {
-        this.storageController.onContentsChanged();
+        ItemStackKey oldKey = this.slotKeys.get(slot);
+        this.updateIndex(slot);
+        this.pageCache.markDirty(slot);
+        ItemStackKey newKey = this.slotKeys.get(slot);
+        if (this.compacting)
+            return;
+
+        if (oldKey != null)
+            this.storageController.onContentsChanged(oldKey);
+        if (newKey != null && !newKey.equals(oldKey))
+            this.storageController.onContentsChanged(newKey);
+    }
+
+    @Override
+    public int getUsedSlots() {
+        return this.stacks.size() - this.emptySlots.cardinality();
+    }
+
+    /**
+     * Moves stacks out of the slots above the desired size, then merges partially filled slots of the same key.
+     * Only the index and page cache are updated, the totals do not change.
+     *
+     * @param budgetNanos the time to spend in nanoseconds.
+     * @return true if there is work left.
+     */
+    @Override
+    public boolean compact(long budgetNanos) {
+        long start = System.nanoTime();
+        this.compacting = true;
+        try {
+            this.compactOversized(start, budgetNanos);
+            this.compactFragmented(start, budgetNanos);
+        } finally {
+            this.compacting = false;
+        }
+        return this.stacks.size() > this.maxSlots || !this.fragmentedKeys.isEmpty();
     }
 
     //region Methods
+
+    /**
+     * Frees empty slots at the end until the desired size is reached.
+     * Slots are only ever removed from the end, so no slot is shifted and the index stays valid.
+     */
     public void prune() {
-        //iterate from the end and remove empty stuff until we have our desired size
-        for (int i = this.stacks.size() - 1; i >= 0 && this.stacks.size() > this.maxSlots; i--) {
-            if (this.stacks.get(i).isEmpty())
-                this.stacks.remove(i);
+        int size = this.stacks.size();
+        while (size > this.maxSlots && this.stacks.get(size - 1).isEmpty()) {
+            size--;
+            this.stacks.remove(size);
+            this.slotKeys.remove(size);
+            this.emptySlots.clear(size);
+            this.pageCache.markDirty(size);
+        }
+    }
+
+    /**
+     * Moves stacks out of the slots above the desired size into free space below it.
+     *
+     * @param start       the time compaction started at.
+     * @param budgetNanos the time to spend in nanoseconds.
+     */
+    protected void compactOversized(long start, long budgetNanos) {
+        while (System.nanoTime() - start < budgetNanos && this.stacks.size() > this.maxSlots) {
+            //pruning keeps the last slot occupied while oversized
+            int slot = this.stacks.size() - 1;
+            ItemStack stack = this.stacks.get(slot);
+            ItemStack remainder = this.insertStack(stack, false);
+            if (remainder.getCount() == stack.getCount())
+                break; //no space left below the desired size
+            this.stacks.set(slot, remainder);
+            this.onContentsChanged(slot);
+            this.prune();
+        }
+    }
+
+    /**
+     * Merges partially filled slots of the same key.
+     *
+     * @param start       the time compaction started at.
+     * @param budgetNanos the time to spend in nanoseconds.
+     */
+    protected void compactFragmented(long start, long budgetNanos) {
+        while (System.nanoTime() - start < budgetNanos && !this.fragmentedKeys.isEmpty()) {
+            IndexEntry entry = this.index.get(this.fragmentedKeys.iterator().next());
+            //fill the lowest partial slot from the highest one
+            int target = entry.partialSlots.first();
+            int source = entry.partialSlots.last();
+            ItemStack targetStack = this.stacks.get(target);
+            ItemStack sourceStack = this.stacks.get(source);
+            int toMove = Math.min(this.getStackLimit(target, targetStack) - targetStack.getCount(),
+                    sourceStack.getCount());
+            this.stacks.set(target, ItemHandlerHelper.copyStackWithSize(targetStack,
+                    targetStack.getCount() + toMove));
+            this.onContentsChanged(target);
+            this.stacks.set(source, ItemHandlerHelper.copyStackWithSize(sourceStack,
+                    sourceStack.getCount() - toMove));
+            this.onContentsChanged(source);
+        }
+    }
+
+    /**
+     * Inserts the given stack, first topping up slots that already hold the same item, then filling empty slots.
+     *
+     * @param stack    the stack to insert.
+     * @param simulate true to simulate.
+     * @return the remainder that could not be inserted.
+     */
+    @Override
+    public ItemStack insertStack(@Nonnull ItemStack stack, boolean simulate) {
+        if (stack.isEmpty())
+            return stack;
+
+        IndexEntry entry = this.index.get(ItemStackKey.probe(stack));
+        if (entry != null && !entry.partialSlots.isEmpty()) {
+            //only partially filled slots can take more, navigate by value as filling a slot removes it from the set
+            for (Integer slot = entry.partialSlots.first(); slot != null && slot < this.maxSlots;
+                 slot = entry.partialSlots.higher(slot)) {
+                stack = this.insertItem(slot, stack, simulate);
+                if (stack.isEmpty())
+                    return ItemStack.EMPTY;
+            }
+        }
+
+        for (int slot = this.emptySlots.nextSetBit(0); slot >= 0 && slot < this.maxSlots;
+             slot = this.emptySlots.nextSetBit(slot + 1)) {
+            stack = this.insertItem(slot, stack, simulate);
+            if (stack.isEmpty())
+                return ItemStack.EMPTY;
+        }
+        return stack;
+    }
+
+    /**
+     * Extracts up to the requested amount of the first stored item that matches the comparator.
+     * Like a linear scan, each matching slot is extracted from at most once, lowest slot first.
+     *
+     * @param comparator    the comparator to match against.
+     * @param requestedSize the amount to extract.
+     * @param simulate      true to simulate.
+     * @return the extracted stack.
+     */
+    @Override
+    public ItemStack extractStack(Predicate<ItemStack> comparator, int requestedSize, boolean simulate) {
+        if (requestedSize <= 0 || comparator == null)
+            return ItemStack.EMPTY;
+
+        //the matching key with the lowest slot is the one a linear scan would have found first.
+        ItemStackKey key = null;
+        int firstSlot = Integer.MAX_VALUE;
+        for (ItemStackKey candidate : this.getCandidateKeys(comparator)) {
+            int slot = this.index.get(candidate).slots.first();
+            if (slot < firstSlot && comparator.test(candidate.getPrototype())) {
+                key = candidate;
+                firstSlot = slot;
+            }
+        }
+        if (key == null)
+            return ItemStack.EMPTY;
+
+        //navigate by value, as real extraction removes emptied slots from the set
+        TreeSet<Integer> slots = this.index.get(key).slots;
+        int remaining = requestedSize;
+        for (Integer slot = slots.first(); slot != null; slot = slots.higher(slot)) {
+            ItemStack extracted = this.extractItem(slot, remaining, simulate);
+            remaining -= extracted.getCount();
+            if (remaining <= 0)
+                break;
+        }
+
+        int extractCount = requestedSize - remaining;
+        return extractCount > 0 ? key.toStack(extractCount) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public void restoreStack(ItemStackKey key, int amount) {
+        ItemStack remainder = this.insertStack(key.toStack(amount), false);
+        //no space left below the desired size: use free slots in the overhead, then grow oversized, just like when
+        //stabilizers are removed. Compaction moves the stacks down once there is space again.
+        int slot = this.emptySlots.nextSetBit(this.maxSlots);
+        while (!remainder.isEmpty()) {
+            if (slot < 0) {
+                slot = this.stacks.size();
+                this.stacks.add(ItemStack.EMPTY);
+                this.slotKeys.add(null);
+                this.slotCounts = Arrays.copyOf(this.slotCounts, slot + 1);
+            }
+            int count = Math.min(remainder.getCount(), this.getStackLimit(slot, remainder));
+            this.stacks.set(slot, ItemHandlerHelper.copyStackWithSize(remainder, count));
+            this.onContentsChanged(slot);
+            remainder.shrink(count);
+            slot = this.emptySlots.nextSetBit(this.maxSlots);
+        }
+    }
+
+    /**
+     * Gets the total amount of all stored items matching the given comparator.
+     *
+     * @param comparator the comparator to match against.
+     * @return the total amount.
+     */
+    @Override
+    public int getAvailableAmount(Predicate<ItemStack> comparator) {
+        if (comparator == null)
+            return 0;
+
+        long totalCount = 0;
+        for (ItemStackKey key : this.getCandidateKeys(comparator)) {
+            if (comparator.test(key.getPrototype()))
+                totalCount += this.index.get(key).count;
+        }
+        return (int) Math.min(totalCount, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Set<ItemStackKey> getStoredKeys() {
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+    @Override
+    public int getStoredKeyCount() {
+        return this.index.size();
+    }
+
+    @Override
+    public long getCount(ItemStackKey key) {
+        IndexEntry entry = this.index.get(key);
+        return entry == null ? 0 : entry.count;
+    }
+
+    /**
+     * Gets the keys that may match the given comparator.
+     * Item stack comparators are resolved via the index, any other predicate has to be tested against all keys.
+     *
+     * @param comparator the comparator.
+     * @return the keys to test the comparator against.
+     */
+    protected Collection<ItemStackKey> getCandidateKeys(Predicate<ItemStack> comparator) {
+        if (comparator instanceof ItemStackComparator) {
+            ItemStackComparator itemStackComparator = (ItemStackComparator) comparator;
+            ItemStack filterStack = itemStackComparator.getFilterStack();
+            if (filterStack.isEmpty())
+                return Collections.emptyList();
+
+            if (itemStackComparator.getMatchNbt()) {
+                ItemStackKey key = ItemStackKey.of(filterStack);
+                return this.index.containsKey(key) ? Collections.singletonList(key) : Collections.emptyList();
+            }
+            return this.keysByItem.getOrDefault(filterStack.getItem(), Collections.emptySet());
+        }
+        return this.index.keySet();
+    }
+
+    /**
+     * Loads a single serialized slot.
+     *
+     * @param itemTags the slot tag.
+     */
+    protected void loadSlot(CompoundNBT itemTags) {
+        int slot = itemTags.getInt("Slot");
+        if (slot >= 0 && slot < this.stacks.size()) {
+            ItemStack stack = ItemStack.of(itemTags);
+            stack.setCount(itemTags.getInt("RealSize"));
+            this.stacks.set(slot, stack);
+        }
+    }
+
+    /**
+     * Recreates the slot index from scratch.
+     */
+    protected void rebuildIndex() {
+        //slots may have moved, so all pages have to be serialized again.
+        this.pageCache.markAllDirty();
+        this.slotKeys = new ArrayList<>(Collections.nCopies(this.stacks.size(), null));
+        this.slotCounts = new int[this.stacks.size()];
+        this.index.clear();
+        this.keysByItem.clear();
+        this.emptySlots.clear();
+        this.fragmentedKeys.clear();
+        for (int slot = 0; slot < this.stacks.size(); slot++) {
+            ItemStack stack = this.stacks.get(slot);
+            if (stack.isEmpty())
+                this.emptySlots.set(slot);
+            else
+                this.indexSlot(slot, ItemStackKey.of(stack), stack.getCount());
+        }
+    }
+
+    /**
+     * Updates the index for the given slot after its contents changed.
+     *
+     * @param slot the changed slot.
+     */
+    protected void updateIndex(int slot) {
+        ItemStack stack = this.stacks.get(slot);
+        ItemStackKey oldKey = this.slotKeys.get(slot);
+        if (oldKey != null && oldKey.matches(stack)) {
+            //only the count changed
+            IndexEntry entry = this.index.get(oldKey);
+            entry.count += stack.getCount() - this.slotCounts[slot];
+            this.slotCounts[slot] = stack.getCount();
+            this.updatePartialSlot(oldKey, entry, slot);
+            return;
+        }
+
+        if (oldKey != null)
+            this.unindexSlot(slot, oldKey);
+        if (stack.isEmpty()) {
+            this.emptySlots.set(slot);
+        } else {
+            this.emptySlots.clear(slot);
+            this.indexSlot(slot, ItemStackKey.of(stack), stack.getCount());
+        }
+    }
+
+    protected void indexSlot(int slot, ItemStackKey key, int count) {
+        this.slotKeys.set(slot, key);
+        this.slotCounts[slot] = count;
+        IndexEntry entry = this.index.get(key);
+        if (entry == null) {
+            entry = new IndexEntry();
+            this.index.put(key, entry);
+            this.keysByItem.computeIfAbsent(key.getItem(), item -> new HashSet<>()).add(key);
+        }
+        entry.slots.add(slot);
+        entry.count += count;
+        this.updatePartialSlot(key, entry, slot);
+    }
+
+    /**
+     * Tracks whether the given slot still has room for more of its key.
+     *
+     * @param key   the key stored in the slot.
+     * @param entry the index entry of the key.
+     * @param slot  the slot.
+     */
+    protected void updatePartialSlot(ItemStackKey key, IndexEntry entry, int slot) {
+        int count = this.slotCounts[slot];
+        if (count > 0 && count < this.getStackLimit(slot, key.getPrototype()))
+            entry.partialSlots.add(slot);
+        else
+            entry.partialSlots.remove(slot);
+        this.updateFragmented(key, entry);
+    }
+
+    protected void updateFragmented(ItemStackKey key, IndexEntry entry) {
+        if (entry.partialSlots.size() > 1)
+            this.fragmentedKeys.add(key);
+        else
+            this.fragmentedKeys.remove(key);
+    }
+
+    protected void unindexSlot(int slot, ItemStackKey key) {
+        int count = this.slotCounts[slot];
+        this.slotKeys.set(slot, null);
+        this.slotCounts[slot] = 0;
+        IndexEntry entry = this.index.get(key);
+        if (entry == null)
+            return;
+
+        entry.slots.remove(slot);
+        entry.partialSlots.remove(slot);
+        entry.count -= count;
+        this.updateFragmented(key, entry);
+        if (entry.slots.isEmpty()) {
+            this.index.remove(key);
+            Set<ItemStackKey> itemKeys = this.keysByItem.get(key.getItem());
+            if (itemKeys != null) {
+                itemKeys.remove(key);
+                if (itemKeys.isEmpty())
+                    this.keysByItem.remove(key.getItem());
+            }
         }
     }
     //endregion Methods
 
+    protected static class IndexEntry {
+        //region Fields
+        /**
+         * The occupied slots, in ascending order.
+         */
+        protected final TreeSet<Integer> slots = new TreeSet<>();
+        /**
+         * The occupied slots that are not full yet, in ascending order.
+         */
+        protected final TreeSet<Integer> partialSlots = new TreeSet<>();
+        protected long count;
+        //endregion Fields
+    }
 }
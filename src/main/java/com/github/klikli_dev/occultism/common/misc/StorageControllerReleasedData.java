@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.Occultism;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.common.util.Constants;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of storage networks that are not claimed by a placed controller, because the controller was broken.
+ * Their contents are only referenced by the dropped item, so if the item is destroyed the network would stay on disk
+ * forever. Networks released long enough ago can be purged by an admin.
+ */
+public class StorageControllerReleasedData extends WorldSavedData {
+
+    //region Fields
+    public static final String NAME = Occultism.MODID + "_storage_released";
+
+    /**
+     * The released network ids, mapped to the time they were released at in milliseconds.
+     */
+    protected Map<UUID, Long> released = new HashMap<>();
+    //endregion Fields
+
+    //region Initialization
+    public StorageControllerReleasedData() {
+        super(NAME);
+    }
+    //endregion Initialization
+
+    //region Static Methods
+    public static StorageControllerReleasedData get(MinecraftServer server) {
+        return server.overworld().getDataStorage().computeIfAbsent(StorageControllerReleasedData::new, NAME);
+    }
+    //endregion Static Methods
+
+    //region Overrides
+    @Override
+    public void load(CompoundNBT compound) {
+        this.released.clear();
+        ListNBT releasedNbt = compound.getList("released", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < releasedNbt.size(); i++) {
+            CompoundNBT entryNbt = releasedNbt.getCompound(i);
+            this.released.put(entryNbt.getUUID("id"), entryNbt.getLong("time"));
+        }
+    }
+
+    @Override
+    public CompoundNBT save(CompoundNBT compound) {
+        ListNBT releasedNbt = new ListNBT();
+        for (Map.Entry<UUID, Long> entry : this.released.entrySet()) {
+            CompoundNBT entryNbt = new CompoundNBT();
+            entryNbt.putUUID("id", entry.getKey());
+            entryNbt.putLong("time", entry.getValue());
+            releasedNbt.add(entryNbt);
+        }
+        compound.put("released", releasedNbt);
+        return compound;
+    }
+    //endregion Overrides
+
+    //region Methods
+    public void add(UUID id) {
+        this.released.put(id, System.currentTimeMillis());
+        this.setDirty();
+    }
+
+    public void remove(UUID id) {
+        if (this.released.remove(id) != null)
+            this.setDirty();
+    }
+
+    /**
+     * Purges all networks released before the given time that have not been claimed since.
+     *
+     * @param server the server.
+     * @param before the time in milliseconds.
+     * @return the amount of purged networks.
+     */
+    public int purge(MinecraftServer server, long before) {
+        int purged = 0;
+        Iterator<Map.Entry<UUID, Long>> iterator = this.released.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Long> entry = iterator.next();
+            if (entry.getValue() >= before)
+                continue;
+            if (StorageControllerSavedData.get(server, entry.getKey()).purge(server, entry.getKey()))
+                purged++;
+            iterator.remove();
+            this.setDirty();
+        }
+        return purged;
+    }
+    //endregion Methods
+}
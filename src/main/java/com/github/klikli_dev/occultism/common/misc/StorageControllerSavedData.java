@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.Occultism;
+import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageControllerItemHandler;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.storage.FolderName;
+import net.minecraft.world.storage.WorldSavedData;
+
+import java.io.File;
+import java.util.UUID;
+
+/**
+ * Holds the contents of a single storage network in its own file in the world data folder, so the chunk of the
+ * storage controller only stores a reference to it.
+ * While the controller is loaded the contents are serialized straight from its item handler on save.
+ * The file is only written if the network changed since the last save, but then it is written as a whole.
+ * A network is claimed by the placed controller that uses it until that block is broken, so copies of the
+ * controller item can never take over the contents.
+ */
+public class StorageControllerSavedData extends WorldSavedData {
+
+    //region Fields
+    public static final String NAME_PREFIX = Occultism.MODID + "_storage_";
+
+    /**
+     * The contents as of the last time the controller was unloaded, or as read from disk.
+     */
+    protected CompoundNBT contents = new CompoundNBT();
+    /**
+     * The item handler of the loaded controller, null while it is unloaded.
+     */
+    protected IStorageControllerItemHandler handler;
+    /**
+     * The position of the placed controller that claimed this network, null while it is only held by an item.
+     */
+    protected GlobalBlockPos owner;
+    //endregion Fields
+
+    //region Initialization
+    public StorageControllerSavedData(String name) {
+        super(name);
+    }
+    //endregion Initialization
+
+    //region Static Methods
+
+    /**
+     * Gets the saved data of the given network, creating it if it does not exist yet.
+     *
+     * @param server the server.
+     * @param id     the network id.
+     * @return the saved data.
+     */
+    public static StorageControllerSavedData get(MinecraftServer server, UUID id) {
+        String name = NAME_PREFIX + id;
+        return server.overworld().getDataStorage()
+                .computeIfAbsent(() -> new StorageControllerSavedData(name), name);
+    }
+
+    /**
+     * @param server the server.
+     * @param id     the network id.
+     * @return the file the given network is saved to, in the data folder of the overworld.
+     */
+    public static File getFile(MinecraftServer server, UUID id) {
+        return server.getWorldPath(FolderName.ROOT).resolve("data").resolve(NAME_PREFIX + id + ".dat").toFile();
+    }
+    //endregion Static Methods
+
+    //region Getter / Setter
+
+    /**
+     * @return the contents stored while no controller was attached. Do not modify!
+     */
+    public CompoundNBT getContents() {
+        return this.contents;
+    }
+
+    /**
+     * @return true if a loaded controller currently uses this network.
+     */
+    public boolean isAttached() {
+        return this.handler != null;
+    }
+
+    /**
+     * @param position the position of a placed controller.
+     * @return true if the controller at the given position may use this network.
+     */
+    public boolean canClaim(GlobalBlockPos position) {
+        return this.owner == null || this.owner.equals(position);
+    }
+
+    /**
+     * @return true if a placed controller claimed this network.
+     */
+    public boolean isClaimed() {
+        return this.owner != null;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+    @Override
+    public void load(CompoundNBT compound) {
+        this.contents = compound.getCompound("items");
+        this.owner = compound.contains("owner") ? GlobalBlockPos.from(compound.getCompound("owner")) : null;
+    }
+
+    @Override
+    public CompoundNBT save(CompoundNBT compound) {
+        compound.put("items", this.handler != null ? this.handler.serializeNBT() : this.contents);
+        if (this.owner != null)
+            compound.put("owner", this.owner.serializeNBT());
+        return compound;
+    }
+    //endregion Overrides
+
+    //region Methods
+
+    /**
+     * Serializes the given handler from now on, until it is detached.
+     *
+     * @param handler the handler of the loaded controller.
+     */
+    public void attach(IStorageControllerItemHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Keeps the current contents of the given handler, used when the controller is unloaded.
+     *
+     * @param handler the handler to detach. Ignored if another handler has been attached since.
+     */
+    public void detach(IStorageControllerItemHandler handler) {
+        if (this.handler == handler) {
+            this.contents = handler.serializeNBT();
+            this.handler = null;
+        }
+    }
+
+    /**
+     * Claims this network for the placed controller at the given position.
+     *
+     * @param position the position of the controller.
+     */
+    public void claim(GlobalBlockPos position) {
+        if (!position.equals(this.owner)) {
+            this.owner = position;
+            this.setDirty();
+        }
+    }
+
+    /**
+     * Releases the claim, used when the controller block is broken and the network moves into the dropped item.
+     */
+    public void release() {
+        if (this.owner != null) {
+            this.owner = null;
+            this.setDirty();
+        }
+    }
+
+    /**
+     * Drops the contents of this unclaimed network and deletes its file.
+     *
+     * @param server the server.
+     * @param id     the network id.
+     * @return true if the network was purged.
+     */
+    public boolean purge(MinecraftServer server, UUID id) {
+        if (this.isAttached() || this.isClaimed())
+            return false;
+        this.contents = new CompoundNBT();
+        //nothing left to save, if the network is used again it is saved as a new, empty network.
+        this.setDirty(false);
+        File file = getFile(server, id);
+        if (file.exists() && !file.delete())
+            Occultism.LOGGER.warn("Could not delete storage network file {}", file);
+        return true;
+    }
+    //endregion Methods
+}
@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import net.minecraft.entity.player.ServerPlayerEntity;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Server side half of the per connection item key dictionary.
+ * Each distinct item and nbt sent to a player gets a small id, the item itself is only sent along until the client
+ * has received it once, afterwards storage packets refer to it by id only.
+ * Only accessed from the server thread.
+ */
+public class StorageKeyDictionary {
+
+    //region Fields
+    private static final Map<UUID, StorageKeyDictionary> DICTIONARIES = new HashMap<>();
+
+    protected int nextId;
+    protected Map<ItemStackKey, Integer> ids = new HashMap<>();
+    /**
+     * The keys whose definition has been sent to the client.
+     */
+    protected Set<ItemStackKey> sentKeys = new HashSet<>();
+    //endregion Fields
+
+    //region Static Methods
+
+    /**
+     * @param player the player.
+     * @return the dictionary for the connection of the given player.
+     */
+    public static StorageKeyDictionary get(ServerPlayerEntity player) {
+        return DICTIONARIES.computeIfAbsent(player.getUUID(), uuid -> new StorageKeyDictionary());
+    }
+
+    /**
+     * Forgets the dictionary of the given player, used when the connection is closed.
+     *
+     * @param player the player.
+     */
+    public static void remove(ServerPlayerEntity player) {
+        DICTIONARIES.remove(player.getUUID());
+    }
+    //endregion Static Methods
+
+    //region Methods
+
+    /**
+     * @param key the key.
+     * @return the id of the key, assigned on first use.
+     */
+    public int getId(ItemStackKey key) {
+        return this.ids.computeIfAbsent(key, k -> this.nextId++);
+    }
+
+    /**
+     * @param key the key.
+     * @return true if the client already received the definition of the key.
+     */
+    public boolean isSent(ItemStackKey key) {
+        return this.sentKeys.contains(key);
+    }
+
+    /**
+     * Marks the given keys as received by the client. Only call after the message carrying them has been sent.
+     *
+     * @param keys the keys.
+     */
+    public void markSent(Collection<ItemStackKey> keys) {
+        this.sentKeys.addAll(keys);
+    }
+
+    /**
+     * Resends all definitions from now on, used if the client reports an id it cannot resolve.
+     * Ids are kept, so messages already on their way stay valid.
+     */
+    public void clearSent() {
+        this.sentKeys.clear();
+    }
+    //endregion Methods
+}
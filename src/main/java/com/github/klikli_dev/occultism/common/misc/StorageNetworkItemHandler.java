@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageControllerItemHandler;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageNetworkItemHandler;
+import net.minecraft.item.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Merged view of the handlers of a storage network made up of a primary controller and the controllers extending it.
+ * Items are sharded by key: a key is inserted into the shard that already stores it, new keys go to the shard
+ * chosen by their hash, and only overflow goes into the other shards.
+ * Each shard persists and sizes its own contents, so this view only implements the network item handler.
+ */
+public class StorageNetworkItemHandler implements IStorageNetworkItemHandler {
+
+    //region Fields
+    /**
+     * The handlers of all loaded shards, the primary controller first.
+     */
+    protected final List<IStorageControllerItemHandler> shards;
+    //endregion Fields
+
+    //region Initialization
+    public StorageNetworkItemHandler(List<IStorageControllerItemHandler> shards) {
+        this.shards = shards;
+    }
+    //endregion Initialization
+
+    //region Overrides
+    @Override
+    public int getUsedSlots() {
+        int usedSlots = 0;
+        for (IStorageControllerItemHandler shard : this.shards)
+            usedSlots += shard.getUsedSlots();
+        return usedSlots;
+    }
+
+    /**
+     * @return the keys stored in any shard. Unlike the shard handlers this is a new set on each call.
+     */
+    @Override
+    public Set<ItemStackKey> getStoredKeys() {
+        Set<ItemStackKey> keys = new LinkedHashSet<>();
+        for (IStorageControllerItemHandler shard : this.shards)
+            keys.addAll(shard.getStoredKeys());
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return the summed key counts of the shards. A key overflowing into several shards is counted once per shard.
+     */
+    @Override
+    public int getStoredKeyCount() {
+        int count = 0;
+        for (IStorageControllerItemHandler shard : this.shards)
+            count += shard.getStoredKeyCount();
+        return count;
+    }
+
+    @Override
+    public long getCount(ItemStackKey key) {
+        long count = 0;
+        for (IStorageControllerItemHandler shard : this.shards)
+            count += shard.getCount(key);
+        return count;
+    }
+
+    @Override
+    public ItemStack insertStack(@Nonnull ItemStack stack, boolean simulate) {
+        if (stack.isEmpty())
+            return stack;
+
+        int owner = this.getOwner(ItemStackKey.probe(stack));
+        stack = this.shards.get(owner).insertStack(stack, simulate);
+        for (int i = 0; i < this.shards.size() && !stack.isEmpty(); i++) {
+            if (i != owner)
+                stack = this.shards.get(i).insertStack(stack, simulate);
+        }
+        return stack;
+    }
+
+    @Override
+    public void restoreStack(ItemStackKey key, int amount) {
+        this.shards.get(this.getOwner(key)).restoreStack(key, amount);
+    }
+
+    @Override
+    public ItemStack extractStack(Predicate<ItemStack> comparator, int requestedSize, boolean simulate) {
+        ItemStack result = ItemStack.EMPTY;
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (result.isEmpty()) {
+                result = shard.extractStack(comparator, requestedSize, simulate);
+            } else {
+                //once an item was found, only the same item can be added from other shards
+                ItemStack extracted = shard.extractStack(ItemStackKey.probe(result)::matches,
+                        requestedSize - result.getCount(), simulate);
+                result.grow(extracted.getCount());
+            }
+            if (result.getCount() >= requestedSize)
+                break;
+        }
+        return result;
+    }
+
+    @Override
+    public int getAvailableAmount(Predicate<ItemStack> comparator) {
+        long available = 0;
+        for (IStorageControllerItemHandler shard : this.shards)
+            available += shard.getAvailableAmount(comparator);
+        return (int) Math.min(available, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getSlots() {
+        int slots = 0;
+        for (IStorageControllerItemHandler shard : this.shards)
+            slots += shard.getSlots();
+        return slots;
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack getStackInSlot(int slot) {
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (slot < shard.getSlots())
+                return shard.getStackInSlot(slot);
+            slot -= shard.getSlots();
+        }
+        return ItemStack.EMPTY;
+    }
+
+    @Override
+    public void setStackInSlot(int slot, @Nonnull ItemStack stack) {
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (slot < shard.getSlots()) {
+                shard.setStackInSlot(slot, stack);
+                return;
+            }
+            slot -= shard.getSlots();
+        }
+        throw new RuntimeException("Slot " + slot + " not in valid range - [0," + this.getSlots() + ")");
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack insertItem(int slot, @Nonnull ItemStack stack, boolean simulate) {
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (slot < shard.getSlots())
+                return shard.insertItem(slot, stack, simulate);
+            slot -= shard.getSlots();
+        }
+        return stack;
+    }
+
+    @Nonnull
+    @Override
+    public ItemStack extractItem(int slot, int amount, boolean simulate) {
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (slot < shard.getSlots())
+                return shard.extractItem(slot, amount, simulate);
+            slot -= shard.getSlots();
+        }
+        return ItemStack.EMPTY;
+    }
+
+    @Override
+    public int getSlotLimit(int slot) {
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (slot < shard.getSlots())
+                return shard.getSlotLimit(slot);
+            slot -= shard.getSlots();
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean isItemValid(int slot, @Nonnull ItemStack stack) {
+        for (IStorageControllerItemHandler shard : this.shards) {
+            if (slot < shard.getSlots())
+                return shard.isItemValid(slot, stack);
+            slot -= shard.getSlots();
+        }
+        return false;
+    }
+    //endregion Overrides
+
+    //region Methods
+
+    /**
+     * Gets the shard a key is routed to: the first shard already storing it, otherwise the shard chosen by hash.
+     *
+     * @param key the key.
+     * @return the index of the owning shard.
+     */
+    protected int getOwner(ItemStackKey key) {
+        for (int i = 0; i < this.shards.size(); i++) {
+            if (this.shards.get(i).getCount(key) > 0)
+                return i;
+        }
+        return Math.floorMod(key.hashCode(), this.shards.size());
+    }
+    //endregion Methods
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
+import com.github.klikli_dev.occultism.api.common.data.StorageSnapshot;
+import com.github.klikli_dev.occultism.network.DictionaryStackList;
+import com.github.klikli_dev.occultism.network.MessageUpdateStackPage;
+import com.github.klikli_dev.occultism.network.MessageUpdateStacks;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraftforge.common.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only summary of the contents of a storage network whose controller is not loaded.
+ * Allows storage remotes to browse and search the network without loading the chunk of the controller.
+ * To keep it small only the most stored items are kept, along with the totals of the whole network.
+ */
+public class StorageNetworkSummary {
+
+    //region Fields
+    /**
+     * The stack version viewers of this summary are synced to, unique among summaries and change journals.
+     */
+    protected final long version;
+    /**
+     * The most stored items of the network.
+     */
+    protected final StorageSnapshot snapshot;
+    protected final int maxSlots;
+    protected final int storedTypes;
+    protected final long storedCount;
+    protected StorageSortedIndex sortedIndex;
+    //endregion Fields
+
+    //region Initialization
+    protected StorageNetworkSummary(StorageSnapshot snapshot, int maxSlots, int storedTypes, long storedCount) {
+        this.version = StorageChangeJournal.reserveVersionBase();
+        this.snapshot = snapshot;
+        this.maxSlots = maxSlots;
+        this.storedTypes = storedTypes;
+        this.storedCount = storedCount;
+    }
+    //endregion Initialization
+
+    //region Static Methods
+
+    /**
+     * Summarizes the given contents.
+     *
+     * @param snapshot  the contents of the network.
+     * @param maxSlots  the slots of the network.
+     * @param maxStacks the amount of the most stored items to keep.
+     * @return the summary.
+     */
+    public static StorageNetworkSummary of(StorageSnapshot snapshot, int maxSlots, int maxStacks) {
+        List<ItemStackKey> keys = new ArrayList<>(snapshot.getKeys());
+        if (keys.size() > maxStacks) {
+            keys.sort(Comparator.comparingLong(snapshot::getCount).reversed());
+            keys = keys.subList(0, maxStacks);
+        }
+        Map<ItemStackKey, Long> counts = new LinkedHashMap<>(keys.size());
+        for (ItemStackKey key : keys)
+            counts.put(key, snapshot.getCount(key));
+        return new StorageNetworkSummary(StorageSnapshot.of(0, counts, snapshot.getUsedSlots()), maxSlots,
+                snapshot.size(), snapshot.getTotalCount());
+    }
+
+    public static StorageNetworkSummary from(CompoundNBT compound) {
+        ListNBT stacksNbt = compound.getList("stacks", Constants.NBT.TAG_COMPOUND);
+        Map<ItemStackKey, Long> counts = new LinkedHashMap<>(stacksNbt.size());
+        for (int i = 0; i < stacksNbt.size(); i++) {
+            CompoundNBT stackNbt = stacksNbt.getCompound(i);
+            ItemStack stack = ItemStack.of(stackNbt);
+            if (!stack.isEmpty())
+                counts.merge(ItemStackKey.of(stack), stackNbt.getLong("RealCount"), Long::sum);
+        }
+        return new StorageNetworkSummary(StorageSnapshot.of(0, counts, compound.getInt("usedSlots")),
+                compound.getInt("maxSlots"), compound.getInt("storedTypes"), compound.getLong("storedCount"));
+    }
+    //endregion Static Methods
+
+    //region Getter / Setter
+    public long getVersion() {
+        return this.version;
+    }
+
+    public StorageSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    public int getMaxSlots() {
+        return this.maxSlots;
+    }
+
+    /**
+     * @return the amount of item types in the whole network, not only those kept in the summary.
+     */
+    public int getStoredTypes() {
+        return this.storedTypes;
+    }
+
+    /**
+     * @return the amount of items in the whole network, not only those kept in the summary.
+     */
+    public long getStoredCount() {
+        return this.storedCount;
+    }
+    //endregion Getter / Setter
+
+    //region Methods
+
+    /**
+     * @param dictionary the key dictionary of the receiving player.
+     * @return a message containing all stored stacks.
+     */
+    public MessageUpdateStacks getMessageUpdateStacks(StorageKeyDictionary dictionary) {
+        DictionaryStackList stacks = new DictionaryStackList(this.snapshot.size());
+        for (ItemStackKey key : this.snapshot.getKeys()) {
+            stacks.add(dictionary, key, (int) Math.min(this.snapshot.getCount(key), Integer.MAX_VALUE));
+        }
+        return new MessageUpdateStacks(this.version, stacks, this.snapshot.getUsedSlots(), this.maxSlots);
+    }
+
+    /**
+     * @param query      the page the client views.
+     * @param dictionary the key dictionary of the receiving player.
+     * @return a message containing the stacks of the requested page.
+     */
+    public MessageUpdateStackPage getStackPageMessage(StackPageQuery query, StorageKeyDictionary dictionary) {
+        if (this.sortedIndex == null)
+            this.sortedIndex = new StorageSortedIndex();
+        StorageSortedIndex.Page page = this.sortedIndex.query(query, this.snapshot);
+        DictionaryStackList stacks = new DictionaryStackList(page.keys.size());
+        for (ItemStackKey key : page.keys) {
+            stacks.add(dictionary, key, (int) Math.min(this.snapshot.getCount(key), Integer.MAX_VALUE));
+        }
+        return new MessageUpdateStackPage(page.offset, page.total, stacks, this.snapshot.getUsedSlots(),
+                this.maxSlots);
+    }
+
+    public CompoundNBT serializeNBT() {
+        CompoundNBT compound = new CompoundNBT();
+        ListNBT stacksNbt = new ListNBT();
+        for (ItemStackKey key : this.snapshot.getKeys()) {
+            CompoundNBT stackNbt = key.getPrototype().save(new CompoundNBT());
+            stackNbt.putLong("RealCount", this.snapshot.getCount(key));
+            stacksNbt.add(stackNbt);
+        }
+        compound.put("stacks", stacksNbt);
+        compound.putInt("usedSlots", this.snapshot.getUsedSlots());
+        compound.putInt("maxSlots", this.maxSlots);
+        compound.putInt("storedTypes", this.storedTypes);
+        compound.putLong("storedCount", this.storedCount);
+        return compound;
+    }
+    //endregion Methods
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.Occultism;
+import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.storage.FolderName;
+import net.minecraft.world.storage.WorldSavedData;
+
+import java.io.File;
+
+/**
+ * Holds the read-only summary of a single storage network in its own small file, named by controller position.
+ * The summary is written when the controller unloads and deleted when the controller is loaded again or removed,
+ * so a summary never outlives the contents it describes.
+ */
+public class StorageNetworkSummarySavedData extends WorldSavedData {
+
+    //region Fields
+    public static final String NAME_PREFIX = Occultism.MODID + "_storage_summary_";
+
+    /**
+     * The summary, null once the controller was loaded again or removed.
+     */
+    protected StorageNetworkSummary summary;
+    //endregion Fields
+
+    //region Initialization
+    public StorageNetworkSummarySavedData(String name) {
+        super(name);
+    }
+    //endregion Initialization
+
+    //region Static Methods
+
+    /**
+     * Gets the summary of the network of the controller at the given position. Never creates a file.
+     *
+     * @param server   the server.
+     * @param position the position of the storage controller.
+     * @return the summary, or null if there is none.
+     */
+    public static StorageNetworkSummary get(MinecraftServer server, GlobalBlockPos position) {
+        String name = getName(position);
+        StorageNetworkSummarySavedData data = server.overworld().getDataStorage()
+                .get(() -> new StorageNetworkSummarySavedData(name), name);
+        return data != null ? data.summary : null;
+    }
+
+    /**
+     * Stores the summary of the network of the controller at the given position.
+     *
+     * @param server   the server.
+     * @param position the position of the storage controller.
+     * @param summary  the summary.
+     */
+    public static void put(MinecraftServer server, GlobalBlockPos position, StorageNetworkSummary summary) {
+        String name = getName(position);
+        StorageNetworkSummarySavedData data = server.overworld().getDataStorage()
+                .computeIfAbsent(() -> new StorageNetworkSummarySavedData(name), name);
+        data.summary = summary;
+        data.setDirty();
+    }
+
+    /**
+     * Removes the summary of the network of the controller at the given position, deleting its file.
+     *
+     * @param server   the server.
+     * @param position the position of the storage controller.
+     */
+    public static void remove(MinecraftServer server, GlobalBlockPos position) {
+        String name = getName(position);
+        StorageNetworkSummarySavedData data = server.overworld().getDataStorage()
+                .get(() -> new StorageNetworkSummarySavedData(name), name);
+        if (data == null || data.summary == null)
+            return;
+
+        data.summary = null;
+        data.setDirty(false);
+        File file = server.getWorldPath(FolderName.ROOT).resolve("data").resolve(name + ".dat").toFile();
+        if (file.exists() && !file.delete())
+            Occultism.LOGGER.warn("Could not delete storage network summary file {}", file);
+    }
+
+    /**
+     * @param position the position of the storage controller.
+     * @return the saved data name for the given position, safe to use as file name.
+     */
+    protected static String getName(GlobalBlockPos position) {
+        ResourceLocation dimension = position.getDimensionKey().location();
+        return NAME_PREFIX + (dimension.getNamespace() + "_" + dimension.getPath()).replaceAll("[^a-z0-9_.-]", "_") +
+                "_" + position.getPos().getX() + "_" + position.getPos().getY() + "_" + position.getPos().getZ();
+    }
+    //endregion Static Methods
+
+    //region Overrides
+    @Override
+    public void load(CompoundNBT compound) {
+        this.summary = compound.contains("summary") ?
+                StorageNetworkSummary.from(compound.getCompound("summary")) : null;
+    }
+
+    @Override
+    public CompoundNBT save(CompoundNBT compound) {
+        if (this.summary != null)
+            compound.put("summary", this.summary.serializeNBT());
+        return compound;
+    }
+    //endregion Overrides
+}
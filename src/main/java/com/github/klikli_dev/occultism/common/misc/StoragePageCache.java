@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraftforge.common.util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Keeps the serialized storage contents in fixed size pages, so saving only re-serializes pages that changed since the
+ * last save. Cached pages are never modified after creation, changed pages are replaced by new tags instead, so the
+ * returned tags can safely be handed to the async chunk writer.
+ * Only building the tags is paged: the file holding the contents is still compressed and written as a whole, so the
+ * write itself grows with the size of the network.
+ */
+public class StoragePageCache {
+
+    //region Fields
+    /**
+     * The amount of elements per page.
+     */
+    public static final int PAGE_SIZE = 256;
+
+    /**
+     * The serialized pages, null for pages that need to be serialized again.
+     */
+    protected List<ListNBT> pages = new ArrayList<>();
+    //endregion Fields
+
+    //region Static Methods
+
+    /**
+     * Passes each element tag of the given pages to the reader.
+     *
+     * @param pages  the pages as returned by {@link #serialize(int, ObjIntConsumer)}.
+     * @param reader the reader.
+     */
+    public static void forEach(ListNBT pages, Consumer<CompoundNBT> reader) {
+        for (int i = 0; i < pages.size(); i++) {
+            ListNBT page = (ListNBT) pages.get(i);
+            for (int j = 0; j < page.size(); j++) {
+                reader.accept(page.getCompound(j));
+            }
+        }
+    }
+
+    /**
+     * @param nbt the compound holding the pages.
+     * @param key the key of the pages.
+     * @return the pages stored under the given key, empty if there are none.
+     */
+    public static ListNBT getPages(CompoundNBT nbt, String key) {
+        return nbt.getList(key, Constants.NBT.TAG_LIST);
+    }
+    //endregion Static Methods
+
+    //region Methods
+
+    /**
+     * Marks the page containing the given element as changed.
+     *
+     * @param index the element index.
+     */
+    public void markDirty(int index) {
+        int page = index / PAGE_SIZE;
+        if (index >= 0 && page < this.pages.size())
+            this.pages.set(page, null);
+    }
+
+    /**
+     * Marks all pages as changed, used when elements moved or the contents were replaced.
+     */
+    public void markAllDirty() {
+        this.pages.clear();
+    }
+
+    /**
+     * Serializes the given amount of elements, reusing all pages that did not change.
+     *
+     * @param size   the amount of elements.
+     * @param writer adds the tag of the element with the given index to the page, if there is anything to store.
+     * @return a list of pages, each a list of element tags.
+     */
+    public ListNBT serialize(int size, ObjIntConsumer<ListNBT> writer) {
+        int pageCount = (size + PAGE_SIZE - 1) / PAGE_SIZE;
+        while (this.pages.size() > pageCount)
+            this.pages.remove(this.pages.size() - 1);
+        while (this.pages.size() < pageCount)
+            this.pages.add(null);
+
+        ListNBT result = new ListNBT();
+        for (int page = 0; page < pageCount; page++) {
+            ListNBT pageTag = this.pages.get(page);
+            if (pageTag == null) {
+                pageTag = new ListNBT();
+                int end = Math.min(size, (page + 1) * PAGE_SIZE);
+                for (int i = page * PAGE_SIZE; i < end; i++) {
+                    writer.accept(pageTag, i);
+                }
+                this.pages.set(page, pageTag);
+            }
+            result.add(pageTag);
+        }
+        return result;
+    }
+    //endregion Methods
+}
@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.data.SortType;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
+import com.github.klikli_dev.occultism.api.common.data.StorageSnapshot;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageNetworkItemHandler;
+import com.github.klikli_dev.occultism.util.TextUtil;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.ResourceLocation;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Server side sorted view of the stored keys of a storage controller, used to answer page queries of thin clients.
+ * Sorted lists are cached per sort type. Name and mod order only depend on the stored keys, so they are only rebuilt
+ * when keys are added or removed, amount order is rebuilt when any count changed.
+ * <p>
+ * Item names are not translated on dedicated servers, so name sorting and searching use the registry name
+ * unless the stack has a custom name. Tooltips are not available either, so tooltip searches match names instead.
+ */
+public class StorageSortedIndex {
+
+    //region Fields
+    protected Map<SortType, List<ItemStackKey>> sortedKeys = new EnumMap<>(SortType.class);
+    protected Map<SortType, Long> sortedVersions = new EnumMap<>(SortType.class);
+    protected Map<ItemStackKey, SearchInfo> searchInfos = new HashMap<>();
+    protected long searchInfosVersion = -1;
+    //endregion Fields
+
+    //region Methods
+
+    /**
+     * Gets the keys in the window of the given query.
+     *
+     * @param query         the query.
+     * @param handler       the handler holding the stored items.
+     * @param stackVersion  the current stack version.
+     * @param keySetVersion the version the stored keys last changed at.
+     * @return the page.
+     */
+    public Page query(StackPageQuery query, IStorageNetworkItemHandler handler, long stackVersion,
+                      long keySetVersion) {
+        return this.query(query, handler::getStoredKeys, handler::getCount, stackVersion, keySetVersion);
+    }
+
+    /**
+     * Gets the keys in the window of the given query.
+     *
+     * @param query    the query.
+     * @param snapshot the snapshot holding the stored items. Snapshots never change, so the snapshot version
+     *                 stands for both its counts and its keys.
+     * @return the page.
+     */
+    public Page query(StackPageQuery query, StorageSnapshot snapshot) {
+        return this.query(query, snapshot::getKeys, snapshot::getCount, snapshot.getVersion(), snapshot.getVersion());
+    }
+
+    /**
+     * Gets the keys in the window of the given query.
+     *
+     * @param query         the query.
+     * @param storedKeys    supplies the stored keys, only called if the stored keys changed.
+     * @param counts        gets the stored amount for a key.
+     * @param stackVersion  the current stack version.
+     * @param keySetVersion the version the stored keys last changed at.
+     * @return the page.
+     */
+    protected Page query(StackPageQuery query, Supplier<Set<ItemStackKey>> storedKeys,
+                         ToLongFunction<ItemStackKey> counts, long stackVersion, long keySetVersion) {
+        if (this.searchInfosVersion != keySetVersion) {
+            this.searchInfos.keySet().retainAll(storedKeys.get());
+            this.searchInfosVersion = keySetVersion;
+        }
+
+        List<ItemStackKey> sorted = this.getSorted(query.getSortType(), storedKeys, counts,
+                query.getSortType() == SortType.AMOUNT ? stackVersion : keySetVersion);
+        String searchText = query.getSearchText().toLowerCase(Locale.ROOT);
+
+        List<ItemStackKey> keys = new ArrayList<>(Math.min(query.getCount(), sorted.size()));
+        int total = 0;
+        boolean ascending = query.getSortDirection().isDown();
+        for (int i = 0; i < sorted.size(); i++) {
+            ItemStackKey key = sorted.get(ascending ? sorted.size() - 1 - i : i);
+            if (!searchText.isEmpty() && !this.matches(key, searchText))
+                continue;
+            if (total >= query.getOffset() && keys.size() < query.getCount())
+                keys.add(key);
+            total++;
+        }
+        return new Page(query.getOffset(), total, keys);
+    }
+
+    /**
+     * Gets the stored keys in the order of the given sort type, sort direction up.
+     *
+     * @param sortType   the sort type.
+     * @param storedKeys supplies the stored keys.
+     * @param counts     gets the stored amount for a key.
+     * @param version    the version that invalidates the sorted list for this sort type.
+     * @return the sorted keys.
+     */
+    protected List<ItemStackKey> getSorted(SortType sortType, Supplier<Set<ItemStackKey>> storedKeys,
+                                           ToLongFunction<ItemStackKey> counts, long version) {
+        Long sortedVersion = this.sortedVersions.get(sortType);
+        if (sortedVersion != null && sortedVersion == version)
+            return this.sortedKeys.get(sortType);
+
+        List<ItemStackKey> sorted = new ArrayList<>(storedKeys.get());
+        switch (sortType) {
+            case AMOUNT:
+                //the counts are read once, so the comparator does not look them up over and over
+                Map<ItemStackKey, Long> amounts = new HashMap<>(sorted.size());
+                for (ItemStackKey key : sorted)
+                    amounts.put(key, counts.applyAsLong(key));
+                sorted.sort((a, b) -> Long.compare(amounts.get(b), amounts.get(a)));
+                break;
+            case NAME:
+                sorted.sort(Comparator.comparing(key -> this.getSearchInfo(key).name));
+                break;
+            case MOD:
+                sorted.sort(Comparator.<ItemStackKey, String>comparing(key -> this.getSearchInfo(key).modName)
+                        .thenComparing(key -> this.getSearchInfo(key).name));
+                break;
+        }
+        this.sortedKeys.put(sortType, sorted);
+        this.sortedVersions.put(sortType, version);
+        return sorted;
+    }
+
+    protected boolean matches(ItemStackKey key, String searchText) {
+        SearchInfo info = this.getSearchInfo(key);
+        if (searchText.startsWith("@")) {
+            return info.modName.contains(searchText.substring(1));
+        } else if (searchText.startsWith("$")) {
+            return info.getTags().contains(searchText.substring(1));
+        } else if (searchText.startsWith("#")) {
+            return info.name.contains(searchText.substring(1));
+        }
+        return info.name.contains(searchText);
+    }
+
+    protected SearchInfo getSearchInfo(ItemStackKey key) {
+        return this.searchInfos.computeIfAbsent(key, SearchInfo::new);
+    }
+    //endregion Methods
+
+    public static class Page {
+        //region Fields
+        public final int offset;
+        public final int total;
+        public final List<ItemStackKey> keys;
+        //endregion Fields
+
+        //region Initialization
+        public Page(int offset, int total, List<ItemStackKey> keys) {
+            this.offset = offset;
+            this.total = total;
+            this.keys = keys;
+        }
+        //endregion Initialization
+    }
+
+    protected static class SearchInfo {
+        //region Fields
+        protected final ItemStackKey key;
+        protected final String name;
+        protected final String modName;
+        protected String tags;
+        //endregion Fields
+
+        //region Initialization
+        protected SearchInfo(ItemStackKey key) {
+            this.key = key;
+            ItemStack stack = key.getPrototype();
+            this.name = (stack.hasCustomHoverName() ? stack.getHoverName().getString() :
+                    key.getItem().getRegistryName().getPath().replace('_', ' ')).toLowerCase(Locale.ROOT);
+            this.modName = TextUtil.getModNameForGameObject(key.getItem()).toLowerCase(Locale.ROOT);
+        }
+        //endregion Initialization
+
+        //region Getter / Setter
+        protected String getTags() {
+            if (this.tags == null) {
+                StringBuilder tagStringBuilder = new StringBuilder();
+                for (ResourceLocation tag : this.key.getItem().getTags()) {
+                    tagStringBuilder.append(tag.toString()).append(' ');
+                }
+                this.tags = tagStringBuilder.toString().toLowerCase(Locale.ROOT);
+            }
+            return this.tags;
+        }
+        //endregion Getter / Setter
+    }
+}
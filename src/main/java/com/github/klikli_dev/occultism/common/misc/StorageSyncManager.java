@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.util.StorageUtil;
+import net.minecraft.entity.player.ServerPlayerEntity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the stack syncs requested for each player during a server tick and sends them once at the end of the tick.
+ * Later requests replace earlier ones, as the stacks are only read when the sync is sent, so bursts such as
+ * shift crafting or filling a recipe result in at most one stack update per player and tick.
+ * Only accessed from the server thread.
+ */
+public class StorageSyncManager {
+
+    //region Fields
+    /**
+     * The players with a pending sync, mapped to true if they need a full snapshot.
+     */
+    private static final Map<ServerPlayerEntity, Boolean> PENDING = new LinkedHashMap<>();
+    //endregion Fields
+
+    //region Static Methods
+
+    /**
+     * Schedules a stack sync for the given player at the end of the current tick.
+     *
+     * @param player   the player.
+     * @param snapshot true if the player needs a full snapshot rather than the changes since the last sync.
+     */
+    public static void request(ServerPlayerEntity player, boolean snapshot) {
+        PENDING.merge(player, snapshot, Boolean::logicalOr);
+    }
+
+    /**
+     * Sends all pending syncs. Syncs requested while sending are sent at the end of the next tick.
+     */
+    public static void flush() {
+        if (PENDING.isEmpty())
+            return;
+
+        List<Map.Entry<ServerPlayerEntity, Boolean>> pending = new ArrayList<>(PENDING.entrySet());
+        PENDING.clear();
+        for (Map.Entry<ServerPlayerEntity, Boolean> entry : pending) {
+            if (!entry.getKey().hasDisconnected())
+                StorageUtil.sendStacks(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Drops the pending sync of the given player, used when the connection is closed.
+     *
+     * @param player the player.
+     */
+    public static void remove(ServerPlayerEntity player) {
+        PENDING.remove(player);
+    }
+    //endregion Static Methods
+}
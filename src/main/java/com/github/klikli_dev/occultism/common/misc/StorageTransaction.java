@@ -0,0 +1,213 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.common.misc;
+
+import com.github.klikli_dev.occultism.Occultism;
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageNetworkItemHandler;
+import net.minecraft.item.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Groups many insertions and extractions on a storage controller into a single change.
+ * Operations are applied right away and recorded in an undo log, the controller is notified once on commit.
+ * Closing the transaction without committing rolls all operations back, so a simulation can be done by just not
+ * committing, and a successful simulation can be committed without performing the operations again.
+ * Rolled back extractions are put back even if the storage is full by then, so a rollback never loses items.
+ * A rollback that restored the contents causes no change notification, so viewers and saved data are unaffected.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (StorageTransaction transaction = storageController.beginTransaction()) {
+ *     ItemStack extracted = transaction.extract(comparator, amount);
+ *     if (!extracted.isEmpty())
+ *         transaction.commit();
+ * }
+ * </pre>
+ */
+public class StorageTransaction implements AutoCloseable {
+
+    //region Fields
+    protected final IStorageNetworkItemHandler handler;
+    protected final Predicate<ItemStack> blacklist;
+    protected final Runnable onEnd;
+    protected final List<Operation> undoLog = new ArrayList<>();
+    protected boolean ended;
+    protected boolean reverted;
+    //endregion Fields
+
+    //region Initialization
+
+    /**
+     * @param handler   the handler to operate on.
+     * @param blacklist stacks matching the blacklist are never inserted.
+     * @param onEnd     called once when the transaction is committed or rolled back, see {@link #isReverted()}.
+     */
+    public StorageTransaction(IStorageNetworkItemHandler handler, Predicate<ItemStack> blacklist, Runnable onEnd) {
+        this.handler = handler;
+        this.blacklist = blacklist;
+        this.onEnd = onEnd;
+    }
+    //endregion Initialization
+
+    //region Getter / Setter
+
+    /**
+     * @return true if the transaction was rolled back and all operations could be reverted, so the stored amounts are
+     * the same as before the transaction.
+     */
+    public boolean isReverted() {
+        return this.reverted;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+
+    /**
+     * Rolls back all operations, unless the transaction has been committed.
+     */
+    @Override
+    public void close() {
+        if (!this.ended)
+            this.rollback();
+    }
+    //endregion Overrides
+
+    //region Methods
+
+    /**
+     * Inserts the given stack.
+     *
+     * @param stack the stack to insert. Not modified.
+     * @return the remainder that could not be inserted.
+     */
+    public ItemStack insert(@Nonnull ItemStack stack) {
+        this.ensureOpen();
+        if (stack.isEmpty() || this.blacklist.test(stack))
+            return stack;
+
+        ItemStack remainder = this.handler.insertStack(stack.copy(), false);
+        int inserted = stack.getCount() - remainder.getCount();
+        if (inserted > 0)
+            this.undoLog.add(new Operation(ItemStackKey.of(stack), inserted, true));
+        return remainder;
+    }
+
+    /**
+     * Extracts up to the requested amount of the first stored item that matches the comparator.
+     *
+     * @param comparator    the comparator to match against.
+     * @param requestedSize the amount to extract.
+     * @return the extracted stack.
+     */
+    public ItemStack extract(Predicate<ItemStack> comparator, int requestedSize) {
+        this.ensureOpen();
+        ItemStack extracted = this.handler.extractStack(comparator, requestedSize, false);
+        if (!extracted.isEmpty())
+            this.undoLog.add(new Operation(ItemStackKey.of(extracted), extracted.getCount(), false));
+        return extracted;
+    }
+
+    /**
+     * Keeps all operations and notifies the controller once about all changes.
+     */
+    public void commit() {
+        this.ensureOpen();
+        this.undoLog.clear();
+        this.end();
+    }
+
+    /**
+     * Reverts all operations in reverse order.
+     */
+    public void rollback() {
+        this.ensureOpen();
+        boolean reverted = true;
+        for (int i = this.undoLog.size() - 1; i >= 0; i--) {
+            reverted &= this.undoLog.get(i).revert(this.handler);
+        }
+        this.reverted = reverted;
+        this.undoLog.clear();
+        this.end();
+    }
+
+    protected void end() {
+        this.ended = true;
+        this.onEnd.run();
+    }
+
+    protected void ensureOpen() {
+        if (this.ended)
+            throw new IllegalStateException("Storage transaction has already ended.");
+    }
+    //endregion Methods
+
+    protected static class Operation {
+        //region Fields
+        protected final ItemStackKey key;
+        protected final int amount;
+        protected final boolean insert;
+        //endregion Fields
+
+        //region Initialization
+        public Operation(ItemStackKey key, int amount, boolean insert) {
+            this.key = key;
+            this.amount = amount;
+            this.insert = insert;
+        }
+        //endregion Initialization
+
+        //region Methods
+
+        /**
+         * @param handler the handler to revert the operation on.
+         * @return true if the operation was reverted completely.
+         */
+        public boolean revert(IStorageNetworkItemHandler handler) {
+            if (this.insert) {
+                //an exact comparator is resolved via the key index instead of testing all keys.
+                ItemStackComparator comparator = new ItemStackComparator(this.key.getPrototype(), true);
+                //extraction is limited per slot, so it may take multiple calls to get everything back out.
+                int remaining = this.amount;
+                while (remaining > 0) {
+                    ItemStack extracted = handler.extractStack(comparator, remaining, false);
+                    if (extracted.isEmpty())
+                        break;
+                    remaining -= extracted.getCount();
+                }
+                if (remaining > 0) {
+                    Occultism.LOGGER.warn("Could not roll back insertion of {} {}.", remaining, this.key);
+                    return false;
+                }
+            } else {
+                handler.restoreStack(this.key, this.amount);
+            }
+            return true;
+        }
+        //endregion Methods
+    }
+}
@@ -100,7 +100,7 @@ public class PentacleManager extends JsonReloadListener {
     }
 
     private void sendPentacleMessage(ServerPlayerEntity player) {
-        OccultismPackets.INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), new MessageUpdatePentacles(this.pentacles));
+        OccultismPackets.sendTo(player, new MessageUpdatePentacles(this.pentacles));
     }
 
     public void setPentacles(Map<ResourceLocation, Pentacle> pentacles) {
@@ -49,6 +49,7 @@ import net.minecraftforge.common.util.LazyOptional;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,6 +61,10 @@ public class StableWormholeTileEntity extends NetworkedTileEntity implements ISt
     protected ItemStack orderStack = ItemStack.EMPTY;
     protected SortDirection sortDirection = SortDirection.DOWN;
     protected SortType sortType = SortType.AMOUNT;
+    /**
+     * The resolved linked storage controller, cleared by the controller when it is unloaded or removed.
+     */
+    protected WeakReference<IStorageController> linkedStorageController;
     //endregion Fields
 
     //region Initialization
@@ -113,12 +118,21 @@ public class StableWormholeTileEntity extends NetworkedTileEntity implements ISt
 
     @Override
     public IStorageController getLinkedStorageController() {
+        IStorageController cached = this.getCachedLinkedStorageController();
+        if (cached != null && !((TileEntity) cached).isRemoved())
+            return cached;
+
+        this.linkedStorageController = null;
         if (this.linkedStorageControllerPosition != null) {
             TileEntity tileEntity = TileEntityUtil.get(this.level,
                     this.linkedStorageControllerPosition);
-            if (tileEntity instanceof IStorageController)
-                return (IStorageController) tileEntity;
-            else if (!this.level.isClientSide) {
+            if (tileEntity instanceof IStorageController) {
+                IStorageController controller = (IStorageController) tileEntity;
+                this.linkedStorageController = new WeakReference<>(controller);
+                if (controller instanceof StorageControllerTileEntity)
+                    ((StorageControllerTileEntity) controller).addLinkedWormhole(this);
+                return controller;
+            } else if (!this.level.isClientSide) {
                 //only reset the storage controller position if we are on logical server -> that means the position is not accessible.
                 //if we are on logical client it simply means we are out of render range, so we do not reset the pos
                 //resetting it would cause issues with e.g. stable wormhole
@@ -137,6 +151,7 @@ public class StableWormholeTileEntity extends NetworkedTileEntity implements ISt
     @Override
     public void setLinkedStorageControllerPosition(GlobalBlockPos blockPos) {
         this.linkedStorageControllerPosition = blockPos;
+        this.invalidateLinkedStorageController();
     }
 
     @Nonnull
@@ -150,11 +165,22 @@ public class StableWormholeTileEntity extends NetworkedTileEntity implements ISt
     }
 
 
+    @Override
+    public void setRemoved() {
+        IStorageController controller = this.getCachedLinkedStorageController();
+        if (controller instanceof StorageControllerTileEntity)
+            ((StorageControllerTileEntity) controller).removeLinkedWormhole(this);
+        this.invalidateLinkedStorageController();
+        super.setRemoved();
+    }
+
     @Override
     public void readNetwork(CompoundNBT compound) {
-        if (compound.contains("linkedStorageControllerPosition"))
+        if (compound.contains("linkedStorageControllerPosition")) {
             this.linkedStorageControllerPosition = GlobalBlockPos.from(compound.getCompound(
                     "linkedStorageControllerPosition"));
+            this.invalidateLinkedStorageController();
+        }
 
         this.setSortDirection(SortDirection.get(compound.getInt("sortDirection")));
         this.setSortType(SortType.get(compound.getInt("sortType")));
@@ -209,5 +235,20 @@ public class StableWormholeTileEntity extends NetworkedTileEntity implements ISt
     //endregion Overrides
 
     //region Methods
+
+    /**
+     * @return the cached linked storage controller, or null if it is not resolved or was garbage collected.
+     */
+    protected IStorageController getCachedLinkedStorageController() {
+        return this.linkedStorageController != null ? this.linkedStorageController.get() : null;
+    }
+
+    /**
+     * Clears the cached linked storage controller, it will be resolved from the linked position on next access.
+     * Called by the storage controller when it is unloaded or removed.
+     */
+    public void invalidateLinkedStorageController() {
+        this.linkedStorageController = null;
+    }
     //endregion Methods
 }
@@ -25,50 +25,79 @@ package com.github.klikli_dev.occultism.common.tile;
 
 import com.github.klikli_dev.occultism.Occultism;
 import com.github.klikli_dev.occultism.api.common.container.IItemStackComparator;
+import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
 import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
 import com.github.klikli_dev.occultism.api.common.data.MachineReference;
 import com.github.klikli_dev.occultism.api.common.data.SortDirection;
 import com.github.klikli_dev.occultism.api.common.data.SortType;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
+import com.github.klikli_dev.occultism.api.common.data.StorageSnapshot;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageControllerItemHandler;
+import com.github.klikli_dev.occultism.api.common.misc.IStorageNetworkItemHandler;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageAccessor;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageControllerProxy;
 import com.github.klikli_dev.occultism.common.block.storage.StorageStabilizerBlock;
 import com.github.klikli_dev.occultism.common.container.storage.StorageControllerContainer;
+import com.github.klikli_dev.occultism.common.container.storage.StorageRemoteContainer;
 import com.github.klikli_dev.occultism.common.entity.spirit.SpiritEntity;
 import com.github.klikli_dev.occultism.common.job.ManageMachineJob;
 import com.github.klikli_dev.occultism.common.misc.DepositOrder;
 import com.github.klikli_dev.occultism.common.misc.ItemStackComparator;
+import com.github.klikli_dev.occultism.common.misc.StorageChangeJournal;
+import com.github.klikli_dev.occultism.common.misc.StorageControllerAutomationItemHandler;
+import com.github.klikli_dev.occultism.common.misc.StorageControllerCountedItemHandler;
 import com.github.klikli_dev.occultism.common.misc.StorageControllerItemStackHandler;
+import com.github.klikli_dev.occultism.common.misc.StorageControllerReleasedData;
+import com.github.klikli_dev.occultism.common.misc.StorageControllerSavedData;
+import com.github.klikli_dev.occultism.common.misc.StorageKeyDictionary;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkItemHandler;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummary;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummarySavedData;
+import com.github.klikli_dev.occultism.common.misc.StorageSortedIndex;
+import com.github.klikli_dev.occultism.common.misc.StorageTransaction;
 import com.github.klikli_dev.occultism.exceptions.ItemHandlerMissingException;
+import com.github.klikli_dev.occultism.network.DictionaryStackList;
+import com.github.klikli_dev.occultism.network.MessageBase;
+import com.github.klikli_dev.occultism.network.MessageUpdateLinkedMachineDeltas;
+import com.github.klikli_dev.occultism.network.MessageUpdateLinkedMachines;
+import com.github.klikli_dev.occultism.network.MessageUpdateStackDeltas;
+import com.github.klikli_dev.occultism.network.MessageUpdateStackPage;
 import com.github.klikli_dev.occultism.network.MessageUpdateStacks;
+import com.github.klikli_dev.occultism.network.OccultismPackets;
 import com.github.klikli_dev.occultism.registry.OccultismBlocks;
 import com.github.klikli_dev.occultism.registry.OccultismItems;
 import com.github.klikli_dev.occultism.registry.OccultismTiles;
 import com.github.klikli_dev.occultism.util.EntityUtil;
 import com.github.klikli_dev.occultism.util.Math3DUtil;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.DirectionalBlock;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.container.Container;
 import net.minecraft.inventory.container.INamedContainerProvider;
 import net.minecraft.item.BlockItem;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.nbt.ListNBT;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.tileentity.ITickableTileEntity;
+import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.World;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.fml.RegistryObject;
 import net.minecraftforge.items.CapabilityItemHandler;
-import net.minecraftforge.items.ItemHandlerHelper;
-import net.minecraftforge.items.ItemStackHandler;
+import net.minecraftforge.items.IItemHandler;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -90,18 +119,94 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
     public Map<GlobalBlockPos, UUID> depositOrderSpirits = new HashMap<>();
     protected SortDirection sortDirection = SortDirection.DOWN;
     protected SortType sortType = SortType.AMOUNT;
-    protected LazyOptional<ItemStackHandler> itemStackHandler =
-            LazyOptional.of(() -> new StorageControllerItemStackHandler(this,
-                    Occultism.SERVER_CONFIG.storage.controllerBaseSlots.get(),
-                    Occultism.SERVER_CONFIG.storage.controllerStackSize.get(),
-                    Occultism.SERVER_CONFIG.storage.overrideItemStackSizes.get()
-            ));
+    protected LazyOptional<IStorageControllerItemHandler> itemStackHandler =
+            LazyOptional.of(this::createItemHandler);
+    /**
+     * The handler exposed to automation if enabled in the config, instead of the slot view of the backing handler.
+     */
+    protected LazyOptional<IItemHandler> automationItemHandler = LazyOptional.of(this::createAutomationItemHandler);
     protected int maxSlots = Occultism.SERVER_CONFIG.storage.controllerBaseSlots.get();
     protected int usedSlots = 0;
     protected boolean stabilizersInitialized = false;
     protected GlobalBlockPos globalPos;
 
-    protected MessageUpdateStacks cachedMessageUpdateStacks;
+    protected StorageChangeJournal changeJournal = new StorageChangeJournal();
+    protected StorageSortedIndex sortedIndex = new StorageSortedIndex();
+    /**
+     * The last published contents, replaced as a whole when a reader needs a newer version than the last one.
+     */
+    protected volatile StorageSnapshot snapshot = StorageSnapshot.EMPTY;
+
+    /**
+     * The id of the saved data holding the contents of this network.
+     */
+    protected UUID storageId;
+    /**
+     * Contents read from the tile nbt of legacy saves and items that still need to be moved into the saved data.
+     */
+    protected CompoundNBT embeddedContents;
+    protected StorageControllerSavedData savedData;
+    protected boolean contentsLoaded;
+
+    /**
+     * The open transaction, pending changes are not flushed while it is open.
+     */
+    protected StorageTransaction transaction;
+    /**
+     * The controllers of the network whose contents changed during the open transaction.
+     */
+    protected Set<StorageControllerTileEntity> transactionParticipants = new HashSet<>();
+    /**
+     * The keys changed during the open transaction of the network, only applied if it is not reverted.
+     */
+    protected Set<ItemStackKey> transactionChangedKeys = new HashSet<>();
+    /**
+     * The keys changed since the last flush, applied to the change journal at once at the end of the tick.
+     */
+    protected Set<ItemStackKey> pendingChangedKeys = new HashSet<>();
+    protected boolean pendingContentsReset;
+
+    /**
+     * The controller this controller extends as a shard of its network, null for primary controllers.
+     */
+    protected GlobalBlockPos primaryPosition;
+    /**
+     * The loaded primary controller, if this controller is a shard.
+     */
+    protected StorageControllerTileEntity primary;
+    /**
+     * The positions of all controllers extending this one, including unloaded ones.
+     */
+    protected Set<GlobalBlockPos> shardPositions = new HashSet<>();
+    /**
+     * The loaded controllers extending this one.
+     */
+    protected Map<GlobalBlockPos, StorageControllerTileEntity> loadedShards = new LinkedHashMap<>();
+    /**
+     * The merged view of this controller and the loaded shards, recreated when shards are loaded or unloaded.
+     */
+    protected IStorageNetworkItemHandler networkHandler;
+    /**
+     * The wormholes that cached a reference to this controller, notified when it is unloaded or removed.
+     */
+    protected Set<StableWormholeTileEntity> linkedWormholes = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * The players that currently have a container for this controller open.
+     */
+    protected Set<ServerPlayerEntity> viewers = new HashSet<>();
+    /**
+     * Starts at a reserved base, so a version known for a previous instance of this controller is never mistaken
+     * for a version of this one.
+     */
+    protected long linkedMachinesVersion = StorageChangeJournal.reserveVersionBase();
+    /**
+     * The linked machines added, removed or renamed since the last push, sent to viewers as deltas.
+     */
+    protected Set<GlobalBlockPos> changedLinkedMachines = new HashSet<>();
+    protected boolean linkedMachinesReset;
+    protected long pushedStackVersion = -1;
+    protected long pushedLinkedMachinesVersion = this.linkedMachinesVersion;
     //endregion Fields
 
     //region Initialization
@@ -118,14 +223,17 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
 
     @Override
     public IStorageController getLinkedStorageController() {
-        return this;
+        return this.primary != null ? this.primary : this;
     }
 
+    /**
+     * @return the position of this controller, or of the primary controller if this controller is a shard.
+     */
     @Override
     public GlobalBlockPos getLinkedStorageControllerPosition() {
-        if (this.globalPos == null)
-            this.globalPos = new GlobalBlockPos(this.getBlockPos(), this.level);
-        return this.globalPos;
+        if (this.primaryPosition != null)
+            return this.primaryPosition;
+        return this.getGlobalPos();
     }
 
     @Override
@@ -170,33 +278,80 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
 
     @Override
     public List<ItemStack> getStacks() {
-        ItemStackHandler handler = this.itemStackHandler.orElseThrow(ItemHandlerMissingException::new);
-        int size = handler.getSlots();
-        int usedSlots = 0;
-        List<ItemStack> result = new ArrayList<>(size);
-        for (int slot = 0; slot < size; slot++) {
-            ItemStack stack = handler.getStackInSlot(slot);
-            if (!stack.isEmpty()) {
-                usedSlots++;
-                this.mergeIntoList(result, stack.copy());
-            }
+        StorageSnapshot snapshot = this.publishSnapshot();
+        this.usedSlots = snapshot.getUsedSlots();
+        return snapshot.toStacks();
+    }
+
+    @Override
+    public StorageSnapshot getStackSnapshot() {
+        //snapshots are built on demand, only the server thread can read the handler to build a newer one.
+        if (this.level != null && !this.level.isClientSide && this.level.getServer().isSameThread())
+            return this.publishSnapshot();
+        return this.snapshot;
+    }
+
+    @Override
+    public MessageUpdateStacks getMessageUpdateStacks(StorageKeyDictionary dictionary) {
+        StorageSnapshot snapshot = this.publishSnapshot();
+        DictionaryStackList stacks = new DictionaryStackList(snapshot.size());
+        for (ItemStackKey key : snapshot.getKeys()) {
+            stacks.add(dictionary, key, (int) Math.min(snapshot.getCount(key), Integer.MAX_VALUE));
         }
-        this.usedSlots = usedSlots;
-        return result;
+        this.usedSlots = snapshot.getUsedSlots();
+        return new MessageUpdateStacks(snapshot.getVersion(), stacks, this.getUsedSlots(), this.getMaxSlots());
     }
 
     @Override
-    public MessageUpdateStacks getMessageUpdateStacks() {
-        if (this.cachedMessageUpdateStacks == null) {
-            List<ItemStack> stacks = this.getStacks();
-            this.cachedMessageUpdateStacks = new MessageUpdateStacks(stacks, this.getUsedSlots(), this.getMaxSlots());
+    public long getStackVersion() {
+        this.flushChanges();
+        return this.changeJournal.getVersion();
+    }
+
+    @Override
+    public MessageBase getStackSyncMessage(long knownVersion, StorageKeyDictionary dictionary) {
+        this.flushChanges();
+        if (knownVersion == this.changeJournal.getVersion())
+            return null;
+
+        IStorageNetworkItemHandler handler = this.getNetworkHandler();
+        Collection<StorageChangeJournal.KeyState> changes = this.changeJournal.getChangesSince(knownVersion);
+        //if most items changed the compressed snapshot is the smaller message.
+        if (changes == null || changes.size() > handler.getStoredKeyCount() / 2 + 1)
+            return this.getMessageUpdateStacks(dictionary);
+
+        DictionaryStackList deltas = new DictionaryStackList(changes.size());
+        for (StorageChangeJournal.KeyState change : changes) {
+            //the journal already left out keys the client never saw
+            deltas.add(dictionary, change.key, (int) Math.min(handler.getCount(change.key), Integer.MAX_VALUE));
+        }
+        this.usedSlots = handler.getUsedSlots();
+        return new MessageUpdateStackDeltas(knownVersion, this.changeJournal.getVersion(), deltas,
+                this.getUsedSlots(), this.getMaxSlots());
+    }
+
+    @Override
+    public MessageUpdateStackPage getStackPageMessage(StackPageQuery query, StorageKeyDictionary dictionary) {
+        this.flushChanges();
+        IStorageNetworkItemHandler handler = this.getNetworkHandler();
+        StorageSortedIndex.Page page = this.sortedIndex.query(query, handler, this.changeJournal.getVersion(),
+                this.changeJournal.getKeySetVersion());
+        DictionaryStackList stacks = new DictionaryStackList(page.keys.size());
+        for (ItemStackKey key : page.keys) {
+            stacks.add(dictionary, key, (int) Math.min(handler.getCount(key), Integer.MAX_VALUE));
         }
-        return this.cachedMessageUpdateStacks;
+        this.usedSlots = handler.getUsedSlots();
+        return new MessageUpdateStackPage(page.offset, page.total, stacks, this.getUsedSlots(),
+                this.getMaxSlots());
     }
 
     @Override
     public int getMaxSlots() {
-        return this.maxSlots;
+        //the network provides the slots of all its loaded shards
+        int maxSlots = this.maxSlots;
+        for (StorageControllerTileEntity shard : this.loadedShards.values())
+            maxSlots += shard.maxSlots;
+        return maxSlots;
     }
 
     @Override
@@ -219,11 +374,28 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
     @Override
     public void setLinkedMachines(Map<GlobalBlockPos, MachineReference> machines) {
         this.linkedMachines = machines;
+        this.onLinkedMachinesReset();
+    }
+
+    @Override
+    public long getLinkedMachinesVersion() {
+        return this.linkedMachinesVersion;
+    }
+
+    @Override
+    public void addViewer(ServerPlayerEntity player) {
+        this.viewers.add(player);
+    }
+
+    @Override
+    public void removeViewer(ServerPlayerEntity player) {
+        this.viewers.remove(player);
     }
 
     @Override
     public void linkMachine(MachineReference machine) {
         this.linkedMachines.put(machine.globalPos, machine);
+        this.onLinkedMachineChanged(machine.globalPos);
     }
 
     @Override
@@ -258,7 +430,8 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
 
     @Override
     public void removeDepositOrderSpirit(GlobalBlockPos linkedMachinePosition) {
-        this.linkedMachines.remove(linkedMachinePosition);
+        if (this.linkedMachines.remove(linkedMachinePosition) != null)
+            this.onLinkedMachineChanged(linkedMachinePosition);
         this.depositOrderSpirits.remove(linkedMachinePosition);
     }
 
@@ -277,99 +450,96 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
         if (this.isBlacklisted(stack))
             return stack.getCount();
 
-        ItemStackHandler handler = this.itemStackHandler.orElseThrow(ItemHandlerMissingException::new);
-        if (ItemHandlerHelper.insertItem(handler, stack, true).getCount() < stack.getCount()) {
-            stack = ItemHandlerHelper.insertItem(handler, stack, simulate);
-        }
-
-        return stack.getCount();
+        IStorageNetworkItemHandler handler = this.getNetworkHandler();
+        return handler.insertStack(stack, simulate).getCount();
     }
 
     @Override
     public ItemStack getItemStack(Predicate<ItemStack> comparator, int requestedSize, boolean simulate) {
-        if (requestedSize <= 0 || comparator == null) {
-            return ItemStack.EMPTY;
-        }
-        ItemStackHandler handler = this.itemStackHandler.orElseThrow(ItemHandlerMissingException::new);
-        ItemStack firstMatchedStack = ItemStack.EMPTY;
-        int remaining = requestedSize;
-        for (int slot = 0; slot < handler.getSlots(); slot++) {
-
-            //first we force a simulation
-            ItemStack stack = handler.extractItem(slot, remaining, true);
-            if (stack.isEmpty()) {
-                continue;
-            }
-
-            //if we have not found anything yet we can just store the result or move on
-            if (firstMatchedStack.isEmpty()) {
-
-                if (!comparator.test(stack)) {
-                    //this slot does not match so we move on
-                    continue;
-                }
-                //just take entire stack -> we're in sim mode
-                firstMatchedStack = stack.copy();
-            } else {
-                //we already found something, so we need to make sure the stacks match up, if not we move on.
-                if (!ItemHandlerHelper.canItemStacksStack(firstMatchedStack, stack)) {
-                    continue;
-                }
-            }
+        IStorageNetworkItemHandler handler = this.getNetworkHandler();
+        return handler.extractStack(comparator, requestedSize, simulate);
+    }
 
-            //get how many we have to extract in this round, cannot be more than we need nor more than is in this slot.
-            int toExtract = Math.min(stack.getCount(), remaining);
+    @Override
+    public StorageTransaction beginTransaction() {
+        //the whole network shares one transaction
+        if (this.primary != null)
+            return this.primary.beginTransaction();
+        if (this.transaction != null)
+            throw new IllegalStateException("A storage transaction is already open for this storage controller.");
+        this.transaction = new StorageTransaction(this.getNetworkHandler(), this::isBlacklisted, this::endTransaction);
+        return this.transaction;
+    }
 
-            //now we can leave simulation up to the caller
-            ItemStack extractedStack = handler.extractItem(slot, toExtract, simulate);
-            remaining -= extractedStack.getCount();
+    public int getAvailableAmount(IItemStackComparator comparator) {
+        IStorageNetworkItemHandler handler = this.getNetworkHandler();
+        return handler.getAvailableAmount(comparator);
+    }
 
-            //if we got all we need we can exit here.
-            if (remaining <= 0) {
-                break;
-            }
-        }
+    @Override
+    public void onContentsChanged() {
+        this.pendingContentsReset = true;
+        if (this.primary != null)
+            this.primary.onContentsChanged();
+    }
 
-        //set the exact output count and return.
-        int extractCount = requestedSize - remaining;
-        if (!firstMatchedStack.isEmpty() && extractCount > 0) {
-            firstMatchedStack.setCount(extractCount);
+    @Override
+    public void onContentsChanged(ItemStackKey key) {
+        StorageControllerTileEntity network = this.primary != null ? this.primary : this;
+        if (network.transaction != null) {
+            //held back until the transaction ends, a rollback that restores the contents changes nothing.
+            this.transactionChangedKeys.add(key);
+            network.transactionParticipants.add(this);
+            return;
         }
+        this.pendingChangedKeys.add(key);
+        if (this.primary != null)
+            this.primary.onContentsChanged(key);
+    }
 
-        return firstMatchedStack;
+    @Override
+    protected void invalidateCaps() {
+        super.invalidateCaps();
+        this.itemStackHandler.invalidate();
+        this.automationItemHandler.invalidate();
     }
 
-    public int getAvailableAmount(IItemStackComparator comparator) {
-        if (comparator == null) {
-            return 0;
-        }
-        int totalCount = 0;
-        ItemStackHandler handler = this.itemStackHandler.orElseThrow(ItemHandlerMissingException::new);
-        int size = handler.getSlots();
-        for (int slot = 0; slot < size; slot++) {
-            ItemStack stack = handler.getStackInSlot(slot);
-            if (comparator.matches(stack))
-                totalCount += stack.getCount();
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        if (!this.level.isClientSide) {
+            this.loadContents();
+            this.connectShards();
+            //the summary is only valid while unloaded, it would be outdated after the next change.
+            this.removeSummary();
         }
-        return totalCount;
     }
 
     @Override
-    public void onContentsChanged() {
-        this.cachedMessageUpdateStacks = null;
-        this.setChanged();
+    public void onChunkUnloaded() {
+        super.onChunkUnloaded();
+        this.updateSummary();
+        this.invalidateCachedReferences();
+        this.disconnectShards();
+        this.detachContents();
     }
 
     @Override
-    protected void invalidateCaps() {
-        super.invalidateCaps();
-        this.itemStackHandler.invalidate();
+    public void setRemoved() {
+        if (this.level != null && !this.level.isClientSide)
+            this.removeSummary();
+        this.invalidateCachedReferences();
+        this.disconnectShards();
+        this.detachContents();
+        super.setRemoved();
     }
 
     @Nonnull
     @Override
     public <T> LazyOptional<T> getCapability(@Nonnull Capability<T> cap, Direction direction) {
         if (cap == CapabilityItemHandler.ITEM_HANDLER_CAPABILITY) {
+            if (Occultism.SERVER_CONFIG.storage.useAutomationItemHandler.get())
+                return this.automationItemHandler.cast();
             return this.itemStackHandler.cast();
         }
         return super.getCapability(cap, direction);
@@ -382,6 +552,13 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
                 this.stabilizersInitialized = true;
                 this.updateStabilizers();
             }
+            //compact only in ticks without changes, so it never competes with actual traffic
+            if (this.pendingChangedKeys.isEmpty() && !this.pendingContentsReset) {
+                this.itemStackHandler.ifPresent(handler ->
+                        handler.compact(Occultism.SERVER_CONFIG.storage.compactionMicrosPerTick.get() * 1000L));
+            }
+            this.flushChanges();
+            this.updateViewers();
         }
     }
 
@@ -390,20 +567,58 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
         compound.remove("linkedMachines"); //linked machines are not saved, they self-register.
         super.load(state, compound);
 
-        //read stored items
+        UUID previousStorageId = this.storageId;
         if (compound.contains("items")) {
-            this.itemStackHandler.ifPresent(handler -> handler.deserializeNBT(compound.getCompound("items")));
-            this.cachedMessageUpdateStacks = null;
+            //legacy save or item: the contents move into the saved data of a new network
+            this.embeddedContents = compound.getCompound("items");
+            this.storageId = null;
+        } else if (compound.hasUUID("storageId")) {
+            this.storageId = compound.getUUID("storageId");
         }
+
+        if (compound.contains("primaryPosition"))
+            this.primaryPosition = GlobalBlockPos.from(compound.getCompound("primaryPosition"));
+        if (compound.contains("shards")) {
+            this.shardPositions.clear();
+            ListNBT shardsNbt = compound.getList("shards", Constants.NBT.TAG_COMPOUND);
+            for (int i = 0; i < shardsNbt.size(); i++)
+                this.shardPositions.add(GlobalBlockPos.from(shardsNbt.getCompound(i)));
+        }
+
+        //nbt applied after placement (e.g. by the block item) replaces the contents loaded so far.
+        boolean storageChanged = this.embeddedContents != null || !Objects.equals(previousStorageId, this.storageId);
+        if (this.contentsLoaded && storageChanged)
+            this.loadContents();
+        if (this.contentsLoaded)
+            this.connectShards();
     }
 
     @Override
     public CompoundNBT save(CompoundNBT compound) {
         super.save(compound);
         compound.remove("linkedMachines"); //linked machines are not saved, they self-register.
-        this.itemStackHandler.ifPresent(handler -> {
-            compound.put("items", handler.serializeNBT());
-        });
+        //the contents are stored in the saved data, the chunk only keeps the reference.
+        if (this.storageId != null)
+            compound.putUUID("storageId", this.storageId);
+        if (this.primaryPosition != null)
+            compound.put("primaryPosition", this.primaryPosition.serializeNBT());
+        if (!this.shardPositions.isEmpty()) {
+            ListNBT shardsNbt = new ListNBT();
+            for (GlobalBlockPos shardPosition : this.shardPositions)
+                shardsNbt.add(shardPosition.serializeNBT());
+            compound.put("shards", shardsNbt);
+        }
+        return compound;
+    }
+
+    @Override
+    public CompoundNBT serializeNBT() {
+        //used for dropped items and pick block, these only carry the network reference and a summary for the tooltip.
+        //the contents stay in the saved data until the controller is placed again.
+        CompoundNBT compound = super.serializeNBT();
+        StorageSnapshot snapshot = this.publishSnapshot();
+        compound.putInt("storedTypes", snapshot.size());
+        compound.putLong("storedCount", snapshot.getTotalCount());
         return compound;
     }
 
@@ -433,6 +648,7 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
 
         //read the linked machines
         this.linkedMachines = new HashMap<>();
+        this.onLinkedMachinesReset();
         if (compound.contains("linkedMachines")) {
             ListNBT machinesNbt = compound.getList("linkedMachines", Constants.NBT.TAG_COMPOUND);
             for (int i = 0; i < machinesNbt.size(); i++) {
@@ -481,6 +697,314 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
     //endregion Overrides
 
     //region Methods
+
+    /**
+     * Loads the contents from the saved data of this network into the item handler and attaches the handler to it.
+     * Contents embedded in the tile nbt are moved into the saved data of a new network.
+     * If another loaded controller already uses the network, or it is claimed by another placed controller (e.g. a
+     * creative copy of the item), a new empty network is created instead, so the contents are never shared.
+     */
+    protected void loadContents() {
+        MinecraftServer server = this.level.getServer();
+        if (server == null)
+            return;
+
+        this.itemStackHandler.ifPresent(handler -> {
+            this.detachContents();
+            if (this.storageId == null)
+                this.storageId = UUID.randomUUID();
+
+            GlobalBlockPos position = this.getGlobalPos();
+            StorageControllerSavedData data = StorageControllerSavedData.get(server, this.storageId);
+            if (data.isAttached() || !data.canClaim(position)) {
+                this.storageId = UUID.randomUUID();
+                data = StorageControllerSavedData.get(server, this.storageId);
+            }
+            data.claim(position);
+            StorageControllerReleasedData.get(server).remove(this.storageId);
+            handler.deserializeNBT(this.embeddedContents != null ? this.embeddedContents : data.getContents());
+            //all viewers need a full snapshot of the loaded contents
+            this.onContentsChanged();
+            data.attach(handler);
+            if (this.embeddedContents != null)
+                data.setDirty();
+
+            this.embeddedContents = null;
+            this.savedData = data;
+            this.contentsLoaded = true;
+            //the reference may be new, so the chunk needs to be saved.
+            this.setChanged();
+        });
+    }
+
+    /**
+     * Releases the claim on the network, called when the block is broken and the network moves into the dropped item.
+     */
+    public void releaseContents() {
+        if (this.level == null || this.level.isClientSide || this.storageId == null)
+            return;
+        MinecraftServer server = this.level.getServer();
+        StorageControllerSavedData.get(server, this.storageId).release();
+        StorageControllerReleasedData.get(server).add(this.storageId);
+    }
+
+    /**
+     * Hands the current contents over to the saved data, so they can be saved after this tile is gone.
+     */
+    protected void detachContents() {
+        if (this.savedData != null) {
+            //changes not flushed yet, e.g. a shard changed through the network this tick, still need to be saved.
+            if (this.pendingContentsReset || !this.pendingChangedKeys.isEmpty())
+                this.markContentsDirty();
+            this.itemStackHandler.ifPresent(this.savedData::detach);
+            this.savedData = null;
+        }
+    }
+
+    protected void endTransaction() {
+        boolean reverted = this.transaction.isReverted();
+        this.transaction = null;
+        //reverted items may have been put back into another controller of the network than they were taken from.
+        boolean moved = this.transactionParticipants.size() > 1;
+        for (StorageControllerTileEntity participant : this.transactionParticipants) {
+            if (!reverted) {
+                for (ItemStackKey key : participant.transactionChangedKeys)
+                    participant.onContentsChanged(key);
+            } else if (moved) {
+                participant.markContentsDirty();
+            }
+            participant.transactionChangedKeys.clear();
+        }
+        this.transactionParticipants.clear();
+    }
+
+    public GlobalBlockPos getGlobalPos() {
+        if (this.globalPos == null)
+            this.globalPos = new GlobalBlockPos(this.getBlockPos(), this.level);
+        return this.globalPos;
+    }
+
+    /**
+     * Writes the read-only summary storage remotes can browse while this controller is not loaded.
+     * Called when the chunk unloads. Shards are part of the summary of their primary controller.
+     */
+    protected void updateSummary() {
+        if (this.isShard() || !this.contentsLoaded)
+            return;
+
+        StorageNetworkSummarySavedData.put(this.level.getServer(), this.getGlobalPos(),
+                StorageNetworkSummary.of(this.publishSnapshot(), this.getMaxSlots(),
+                        Occultism.SERVER_CONFIG.storage.unloadedSummaryStacks.get()));
+    }
+
+    /**
+     * Deletes the read-only summary of this network, called when the controller is loaded or removed.
+     */
+    protected void removeSummary() {
+        if (!this.isShard())
+            StorageNetworkSummarySavedData.remove(this.level.getServer(), this.getGlobalPos());
+    }
+
+    /**
+     * Registers a wormhole that caches a reference to this controller.
+     *
+     * @param wormhole the wormhole.
+     */
+    public void addLinkedWormhole(StableWormholeTileEntity wormhole) {
+        this.linkedWormholes.add(wormhole);
+    }
+
+    public void removeLinkedWormhole(StableWormholeTileEntity wormhole) {
+        this.linkedWormholes.remove(wormhole);
+    }
+
+    /**
+     * Clears the cached reference of all registered wormholes and storage remotes viewing this controller,
+     * they resolve the controller again on next access.
+     */
+    protected void invalidateCachedReferences() {
+        for (StableWormholeTileEntity wormhole : this.linkedWormholes)
+            wormhole.invalidateLinkedStorageController();
+        this.linkedWormholes.clear();
+
+        for (ServerPlayerEntity viewer : this.viewers) {
+            if (viewer.containerMenu instanceof StorageRemoteContainer)
+                ((StorageRemoteContainer) viewer.containerMenu).invalidateStorageController();
+        }
+    }
+
+    /**
+     * @return true if this controller extends the network of another controller.
+     */
+    public boolean isShard() {
+        return this.primaryPosition != null;
+    }
+
+    /**
+     * @return the handler of this controller merged with the handlers of all loaded shards.
+     */
+    protected IStorageNetworkItemHandler getNetworkHandler() {
+        IStorageControllerItemHandler handler = this.itemStackHandler.orElseThrow(ItemHandlerMissingException::new);
+        if (this.loadedShards.isEmpty())
+            return handler;
+
+        if (this.networkHandler == null) {
+            List<IStorageControllerItemHandler> handlers = new ArrayList<>();
+            handlers.add(handler);
+            for (StorageControllerTileEntity shard : this.loadedShards.values())
+                handlers.add(shard.itemStackHandler.orElseThrow(ItemHandlerMissingException::new));
+            this.networkHandler = new StorageNetworkItemHandler(handlers);
+        }
+        return this.networkHandler;
+    }
+
+    /**
+     * Connects this controller with the loaded parts of its network.
+     * Shards attach to their primary controller, primary controllers attach all loaded shards.
+     * Unloaded controllers connect themselves once they are loaded, chunks are never loaded for this.
+     */
+    protected void connectShards() {
+        if (this.primaryPosition != null) {
+            if (this.primary == null) {
+                StorageControllerTileEntity primary = this.getLoadedController(this.primaryPosition);
+                //shards of shards are not supported, the primary has to be the root of the network.
+                if (primary != null && primary != this && !primary.isShard())
+                    primary.attachShard(this);
+            }
+            return;
+        }
+
+        Iterator<GlobalBlockPos> iterator = this.shardPositions.iterator();
+        while (iterator.hasNext()) {
+            GlobalBlockPos shardPosition = iterator.next();
+            if (this.loadedShards.containsKey(shardPosition) || !this.isLoaded(shardPosition))
+                continue;
+            StorageControllerTileEntity shard = this.getLoadedController(shardPosition);
+            if (shard != null && this.getGlobalPos().equals(shard.primaryPosition)) {
+                this.attachShard(shard);
+            } else {
+                //the shard was broken or moved, it re-registers itself once placed again.
+                iterator.remove();
+                this.setChanged();
+            }
+        }
+    }
+
+    /**
+     * Disconnects this controller from the rest of its network, called when it is unloaded or removed.
+     */
+    protected void disconnectShards() {
+        if (this.primary != null)
+            this.primary.detachShard(this);
+        for (StorageControllerTileEntity shard : this.loadedShards.values())
+            shard.primary = null;
+        if (!this.loadedShards.isEmpty()) {
+            this.loadedShards.clear();
+            this.networkHandler = null;
+            this.onContentsChanged();
+        }
+    }
+
+    /**
+     * Adds the given controller as loaded shard of this network.
+     *
+     * @param shard the shard.
+     */
+    protected void attachShard(StorageControllerTileEntity shard) {
+        GlobalBlockPos shardPosition = shard.getGlobalPos();
+        if (this.shardPositions.add(shardPosition))
+            this.setChanged();
+        this.loadedShards.put(shardPosition, shard);
+        shard.primary = this;
+        this.networkHandler = null;
+        //the merged contents changed as a whole
+        this.onContentsChanged();
+    }
+
+    /**
+     * Removes the given controller from the loaded shards, it stays part of the network.
+     *
+     * @param shard the shard.
+     */
+    protected void detachShard(StorageControllerTileEntity shard) {
+        if (this.loadedShards.remove(shard.getGlobalPos()) != null) {
+            this.networkHandler = null;
+            this.onContentsChanged();
+        }
+        shard.primary = null;
+    }
+
+    /**
+     * @param pos the position.
+     * @return true if the chunk at the given position is loaded.
+     */
+    protected boolean isLoaded(GlobalBlockPos pos) {
+        World world = this.level.getServer().getLevel(pos.getDimensionKey());
+        return world != null && world.isLoaded(pos.getPos());
+    }
+
+    /**
+     * @param pos the position.
+     * @return the storage controller at the given position, or null if there is none or it is not loaded.
+     */
+    protected StorageControllerTileEntity getLoadedController(GlobalBlockPos pos) {
+        if (!this.isLoaded(pos))
+            return null;
+        TileEntity tileEntity = this.level.getServer().getLevel(pos.getDimensionKey()).getBlockEntity(pos.getPos());
+        return tileEntity instanceof StorageControllerTileEntity ? (StorageControllerTileEntity) tileEntity : null;
+    }
+
+    /**
+     * Applies the changes collected since the last flush to the change journal and marks the contents dirty, once
+     * per changed key instead of once per slot mutation.
+     * Called at the end of each tick and before the journal is read, does nothing while a transaction is open.
+     */
+    protected void flushChanges() {
+        if (this.transaction != null || (!this.pendingContentsReset && this.pendingChangedKeys.isEmpty()))
+            return;
+
+        IStorageNetworkItemHandler handler = this.getNetworkHandler();
+        if (this.pendingContentsReset) {
+            this.changeJournal.reset(handler.getStoredKeys());
+        } else {
+            for (ItemStackKey key : this.pendingChangedKeys)
+                this.changeJournal.record(key, handler.getCount(key) > 0);
+        }
+        this.pendingChangedKeys.clear();
+        this.pendingContentsReset = false;
+        this.markContentsDirty();
+    }
+
+    /**
+     * Marks the saved data holding the contents as dirty.
+     * Falls back to the tile itself as long as the contents are not loaded yet.
+     */
+    protected void markContentsDirty() {
+        if (this.savedData != null)
+            this.savedData.setDirty();
+        else
+            this.setChanged();
+    }
+
+    protected IStorageControllerItemHandler createItemHandler() {
+        if (Occultism.SERVER_CONFIG.storage.useCountedStorage.get()) {
+            return new StorageControllerCountedItemHandler(this,
+                    Occultism.SERVER_CONFIG.storage.controllerBaseSlots.get(),
+                    Occultism.SERVER_CONFIG.storage.controllerStackSize.get());
+        }
+        return new StorageControllerItemStackHandler(this,
+                Occultism.SERVER_CONFIG.storage.controllerBaseSlots.get(),
+                Occultism.SERVER_CONFIG.storage.controllerStackSize.get(),
+                Occultism.SERVER_CONFIG.storage.overrideItemStackSizes.get());
+    }
+
+    protected IItemHandler createAutomationItemHandler() {
+        //shards expose their primary's network, so automation does not need to know about sharding
+        return new StorageControllerAutomationItemHandler(
+                () -> (this.primary != null ? this.primary : this).getNetworkHandler(), this::isBlacklisted,
+                Math.max(1, Occultism.SERVER_CONFIG.storage.automationExtractSlots.get()));
+    }
+
     public void updateStabilizers() {
         int additionalSlots = 0;
         List<BlockPos> stabilizerLocations = this.findValidStabilizers();
@@ -525,23 +1049,113 @@ public class StorageControllerTileEntity extends NetworkedTileEntity implements
     }
 
 
-    protected void mergeIntoList(List<ItemStack> list, ItemStack stackToAdd) {
-        boolean merged = false;
-        for (ItemStack stack : list) {
-            if (ItemHandlerHelper.canItemStacksStack(stackToAdd, stack)) {
-                stack.setCount(stack.getCount() + stackToAdd.getCount());
-                merged = true;
-                break;
+    protected void validateLinkedMachines() {
+        // remove all entries that lead to invalid tile entities.
+        Iterator<MachineReference> iterator = this.linkedMachines.values().iterator();
+        while (iterator.hasNext()) {
+            MachineReference machine = iterator.next();
+            if (machine.getTileEntity(this.level) == null) {
+                iterator.remove();
+                this.onLinkedMachineChanged(machine.globalPos);
+            }
+        }
+    }
+
+    protected void onLinkedMachineChanged(GlobalBlockPos position) {
+        this.linkedMachinesVersion++;
+        this.changedLinkedMachines.add(position);
+    }
+
+    /**
+     * Marks all linked machines as changed, viewers get the full list on the next push.
+     */
+    protected void onLinkedMachinesReset() {
+        this.linkedMachinesVersion++;
+        this.linkedMachinesReset = true;
+        this.changedLinkedMachines.clear();
+    }
+
+    /**
+     * Sends the changes since the last tick to all viewers. Does nothing if neither stacks nor linked machines changed.
+     */
+    protected void updateViewers() {
+        long stackVersion = this.getStackVersion();
+        boolean stacksChanged = stackVersion != this.pushedStackVersion;
+        boolean linkedMachinesChanged = this.linkedMachinesVersion != this.pushedLinkedMachinesVersion;
+        if (!stacksChanged && !linkedMachinesChanged)
+            return;
+
+        MessageBase linkedMachinesMessage = null;
+        if (linkedMachinesChanged && !this.viewers.isEmpty()) {
+            //viewers already know the list as of the last push, so only the changed machines are sent
+            if (this.linkedMachinesReset) {
+                linkedMachinesMessage =
+                        new MessageUpdateLinkedMachines(this.linkedMachinesVersion, this.linkedMachines);
+            } else {
+                List<MachineReference> updated = new ArrayList<>();
+                List<GlobalBlockPos> removed = new ArrayList<>();
+                for (GlobalBlockPos position : this.changedLinkedMachines) {
+                    MachineReference machine = this.linkedMachines.get(position);
+                    if (machine != null)
+                        updated.add(machine);
+                    else
+                        removed.add(position);
+                }
+                linkedMachinesMessage = new MessageUpdateLinkedMachineDeltas(this.pushedLinkedMachinesVersion,
+                        this.linkedMachinesVersion, updated, removed);
             }
         }
-        if (!merged) {
-            list.add(stackToAdd);
+        this.changedLinkedMachines.clear();
+        this.linkedMachinesReset = false;
+
+        this.pushedStackVersion = stackVersion;
+        this.pushedLinkedMachinesVersion = this.linkedMachinesVersion;
+        if (this.viewers.isEmpty())
+            return;
+
+        Iterator<ServerPlayerEntity> iterator = this.viewers.iterator();
+        while (iterator.hasNext()) {
+            ServerPlayerEntity player = iterator.next();
+            if (!this.isViewing(player)) {
+                iterator.remove();
+                continue;
+            }
+            if (stacksChanged)
+                StorageUtil.syncStacks(player);
+            if (linkedMachinesMessage != null)
+                OccultismPackets.sendTo(player, linkedMachinesMessage);
         }
     }
 
-    protected void validateLinkedMachines() {
-        // remove all entries that lead to invalid tile entities.
-        this.linkedMachines.entrySet().removeIf(entry -> entry.getValue().getTileEntity(this.level) == null);
+    /**
+     * Publishes a new snapshot of the contents if they changed since the last one. Server thread only.
+     * Called on demand by readers, so ticks without readers never pay for copying the contents.
+     *
+     * @return the current snapshot.
+     */
+    protected StorageSnapshot publishSnapshot() {
+        this.flushChanges();
+        if (this.snapshot.getVersion() != this.changeJournal.getVersion()) {
+            IStorageNetworkItemHandler handler = this.getNetworkHandler();
+            //the handler keeps per key totals up to date, so we only need to walk them.
+            Set<ItemStackKey> keys = handler.getStoredKeys();
+            Map<ItemStackKey, Long> counts = new LinkedHashMap<>(keys.size());
+            for (ItemStackKey key : keys) {
+                counts.put(key, handler.getCount(key));
+            }
+            this.snapshot = StorageSnapshot.of(this.changeJournal.getVersion(), counts, handler.getUsedSlots());
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * @param player the player to check.
+     * @return true if the player still has a container for this controller open.
+     */
+    protected boolean isViewing(ServerPlayerEntity player) {
+        return !player.removed && !player.hasDisconnected() &&
+                player.containerMenu instanceof IStorageControllerContainer &&
+                ((IStorageControllerContainer) player.containerMenu).getStorageController() == this;
     }
     //endregion Methods
 
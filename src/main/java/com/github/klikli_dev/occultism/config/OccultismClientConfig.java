@@ -64,6 +64,7 @@ public class OccultismClientConfig extends ConfigBase {
     public class MiscSettings extends ConfigCategoryBase {
         //region Fields
         public final CachedBoolean syncJeiSearch;
+        public final CachedBoolean thinStorageClient;
         //endregion Fields
 
         //region Initialization
@@ -75,6 +76,10 @@ public class OccultismClientConfig extends ConfigBase {
                     builder.comment(
                                     "Sync JEI search in storage actuator.")
                             .define("syncJeiSearch", false));
+            this.thinStorageClient = CachedBoolean.cache(this,
+                    builder.comment(
+                                    "Only request the visible page of storage actuator contents, searched and sorted by the server. Saves memory and bandwidth for very large storage networks, but every scroll or search waits for the server.")
+                            .define("thinStorageClient", false));
             builder.pop();
         }
         //endregion Initialization
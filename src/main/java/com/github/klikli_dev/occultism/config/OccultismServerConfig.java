@@ -40,6 +40,7 @@ public class OccultismServerConfig extends ConfigBase {
     public final RitualSettings rituals;
     public final DimensionalMineshaftSettings dimensionalMineshaft;
     public final ItemSettings itemSettings;
+    public final NetworkSettings network;
     public final ForgeConfigSpec spec;
     //endregion Fields
 
@@ -51,6 +52,7 @@ public class OccultismServerConfig extends ConfigBase {
         this.rituals = new RitualSettings(this, builder);
         this.dimensionalMineshaft = new DimensionalMineshaftSettings(this, builder);
         this.itemSettings = new ItemSettings(this, builder);
+        this.network = new NetworkSettings(this, builder);
         this.spec = builder.build();
     }
     //endregion Initialization
@@ -76,6 +78,28 @@ public class OccultismServerConfig extends ConfigBase {
         }
     }
 
+    public class NetworkSettings extends ConfigCategoryBase {
+        //region Fields
+        public final CachedInt packetStatisticsLogInterval;
+        //endregion Fields
+
+        //region Initialization
+        public NetworkSettings(IConfigCache parent, ForgeConfigSpec.Builder builder) {
+            super(parent, builder);
+            builder.comment("Network Settings").push("network");
+
+            this.packetStatisticsLogInterval = CachedInt.cache(this,
+                    builder.comment(
+                                    "The interval in seconds in which the traffic of Occultism packets is written to " +
+                                            "the log. 0 to disable. The statistics can also be viewed with " +
+                                            "/occultism packets.")
+                            .define("packetStatisticsLogInterval", 0));
+
+            builder.pop();
+        }
+        //endregion Initialization
+    }
+
     public class SpiritJobSettings extends ConfigCategoryBase {
         //region Fields
         public final CachedFloat tier1CrusherTimeMultiplier;
@@ -243,6 +267,11 @@ public class OccultismServerConfig extends ConfigBase {
         public final CachedInt controllerBaseSlots;
         public final CachedInt controllerStackSize;
         public final CachedBoolean overrideItemStackSizes;
+        public final CachedBoolean useCountedStorage;
+        public final CachedInt compactionMicrosPerTick;
+        public final CachedInt unloadedSummaryStacks;
+        public final CachedBoolean useAutomationItemHandler;
+        public final CachedInt automationExtractSlots;
         //endregion Fields
 
         //region Initialization
@@ -273,6 +302,37 @@ public class OccultismServerConfig extends ConfigBase {
                                             "item type (such as 16 for ender pearls, 64 for iron ingot). WARNING: Setting this to " +
                                             "false may have a negative impact on performance.")
                             .define("overrideItemStackSizes", true));
+            this.useCountedStorage = CachedBoolean.cache(this,
+                    builder.comment(
+                                    "True to store the contents of storage actuators as one entry with a total count per item " +
+                                            "type, instead of in individual slots. Slots are then interpreted as item types, and " +
+                                            "the total amount of items is limited to slots * controllerStackSize. This greatly " +
+                                            "reduces memory use and save size of large storage networks. Existing contents are " +
+                                            "converted when a storage actuator is loaded.")
+                            .define("useCountedStorage", false));
+            this.compactionMicrosPerTick = CachedInt.cache(this,
+                    builder.comment(
+                                    "The time in microseconds a storage actuator may spend per idle tick to merge partially " +
+                                            "filled slots and to free slots above its size after stabilizers were removed. " +
+                                            "0 to disable.")
+                            .define("compactionMicrosPerTick", 100));
+            this.unloadedSummaryStacks = CachedInt.cache(this,
+                    builder.comment(
+                                    "The amount of the most stored items kept in the summary of an unloaded storage " +
+                                            "network, which storage remotes can browse without loading the chunk.")
+                            .define("unloadedSummaryStacks", 256));
+            this.useAutomationItemHandler = CachedBoolean.cache(this,
+                    builder.comment(
+                                    "True to expose a small item handler to pipes, hoppers and other automation instead of " +
+                                            "all slots of the storage actuator. Slot 0 accepts any item, the following slots " +
+                                            "rotate through the stored items. Recommended for large storage networks, as many " +
+                                            "automation mods check every slot every tick.")
+                            .define("useAutomationItemHandler", false));
+            this.automationExtractSlots = CachedInt.cache(this,
+                    builder.comment(
+                                    "The amount of slots automation can extract from if useAutomationItemHandler is " +
+                                            "enabled.")
+                            .define("automationExtractSlots", 9));
             builder.pop();
         }
         //endregion Initialization
@@ -25,6 +25,7 @@ package com.github.klikli_dev.occultism.handlers;
 import com.github.klikli_dev.occultism.Occultism;
 import com.github.klikli_dev.occultism.client.gui.storage.SatchelScreen;
 import com.github.klikli_dev.occultism.client.gui.storage.StorageRemoteGui;
+import com.github.klikli_dev.occultism.client.storage.ClientStorageKeyDictionary;
 import com.github.klikli_dev.occultism.network.*;
 import com.github.klikli_dev.occultism.util.CuriosUtil;
 import com.github.klikli_dev.occultism.util.MovementUtil;
@@ -34,6 +35,7 @@ import net.minecraft.client.settings.KeyBinding;
 import net.minecraft.entity.EntityType;
 import net.minecraft.util.SoundEvents;
 import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.client.event.InputEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
@@ -61,6 +63,12 @@ public class ClientPlayerEventHandler {
         }
     }
 
+    @SubscribeEvent
+    public static void onLoggedOut(final ClientPlayerNetworkEvent.LoggedOutEvent event) {
+        //item key ids are only valid for the connection they were sent on
+        ClientStorageKeyDictionary.clear();
+    }
+
     @SubscribeEvent
     public static void onMouseInput(final InputEvent.MouseInputEvent event) {
         //handle mouse button bindings for storage keys
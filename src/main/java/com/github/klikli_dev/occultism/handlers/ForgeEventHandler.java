@@ -23,8 +23,11 @@
 package com.github.klikli_dev.occultism.handlers;
 
 import com.github.klikli_dev.occultism.Occultism;
+import com.github.klikli_dev.occultism.common.misc.StorageSyncManager;
+import com.github.klikli_dev.occultism.network.PacketStatistics;
 import com.github.klikli_dev.occultism.registry.OccultismCommands;
 import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
@@ -37,5 +40,13 @@ public class ForgeEventHandler {
     public static void registerCommands(RegisterCommandsEvent event) {
         OccultismCommands.register(event.getDispatcher());
     }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            StorageSyncManager.flush();
+            PacketStatistics.tick(Occultism.SERVER_CONFIG.network.packetStatisticsLogInterval.get());
+        }
+    }
     //endregion Static Methods
 }
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.network;
+
+import com.github.klikli_dev.occultism.api.common.data.ItemStackKey;
+import com.github.klikli_dev.occultism.client.storage.ClientStorageKeyDictionary;
+import com.github.klikli_dev.occultism.common.misc.StorageKeyDictionary;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of stacks encoded against the per connection item key dictionary.
+ * Each entry is a dictionary id and a count, item and nbt are only included if the client has not received them yet.
+ * After sending, the included keys have to be marked via {@link StorageKeyDictionary#markSent(java.util.Collection)}.
+ */
+public class DictionaryStackList {
+
+    //region Fields
+    protected List<Entry> entries;
+    /**
+     * The keys whose definition is included, only set on the server.
+     */
+    protected List<ItemStackKey> definedKeys;
+    //endregion Fields
+
+    //region Initialization
+    public DictionaryStackList(int expectedSize) {
+        this.entries = new ArrayList<>(expectedSize);
+        this.definedKeys = new ArrayList<>();
+    }
+    //endregion Initialization
+
+    //region Getter / Setter
+    public List<ItemStackKey> getDefinedKeys() {
+        return this.definedKeys;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    public int getId(int index) {
+        return this.entries.get(index).id;
+    }
+
+    public int getCount(int index) {
+        return this.entries.get(index).count;
+    }
+    //endregion Getter / Setter
+
+    //region Static Methods
+    public static DictionaryStackList decode(PacketBuffer buf) {
+        int size = buf.readVarInt();
+        DictionaryStackList list = new DictionaryStackList(size);
+        for (int i = 0; i < size; i++) {
+            int idAndFlag = buf.readVarInt();
+            int count = buf.readVarInt();
+            ItemStack definition = (idAndFlag & 1) != 0 ? buf.readItem() : ItemStack.EMPTY;
+            list.entries.add(new Entry(idAndFlag >>> 1, count, definition));
+        }
+        return list;
+    }
+    //endregion Static Methods
+
+    //region Methods
+
+    /**
+     * Adds the given key, including its definition if the client does not know it yet.
+     * Entries with a count of 0 or less never carry a definition, they mark removed stacks.
+     *
+     * @param dictionary the dictionary of the receiving player.
+     * @param key        the key.
+     * @param count      the count.
+     */
+    public void add(StorageKeyDictionary dictionary, ItemStackKey key, int count) {
+        ItemStack definition = ItemStack.EMPTY;
+        if (count > 0 && !dictionary.isSent(key)) {
+            definition = key.getPrototype();
+            this.definedKeys.add(key);
+        }
+        this.entries.add(new Entry(dictionary.getId(key), Math.max(0, count), definition));
+    }
+
+    public void encode(PacketBuffer buf) {
+        buf.writeVarInt(this.entries.size());
+        for (Entry entry : this.entries) {
+            boolean defined = !entry.definition.isEmpty();
+            buf.writeVarInt(entry.id << 1 | (defined ? 1 : 0));
+            buf.writeVarInt(entry.count);
+            if (defined)
+                buf.writeItem(entry.definition);
+        }
+    }
+
+    /**
+     * Stores the included definitions in the client dictionary.
+     * Has to happen for every received list, even if there is no gui to show it anymore.
+     */
+    @OnlyIn(Dist.CLIENT)
+    public void define() {
+        for (Entry entry : this.entries) {
+            if (!entry.definition.isEmpty())
+                ClientStorageKeyDictionary.define(entry.id, entry.definition);
+        }
+    }
+
+    /**
+     * @param index the entry index.
+     * @return the stack for the entry, or null if its id is not defined on the client.
+     */
+    @Nullable
+    @OnlyIn(Dist.CLIENT)
+    public ItemStack createStack(int index) {
+        Entry entry = this.entries.get(index);
+        return ClientStorageKeyDictionary.createStack(entry.id, entry.count);
+    }
+    //endregion Methods
+
+    protected static class Entry {
+        //region Fields
+        protected final int id;
+        protected final int count;
+        protected final ItemStack definition;
+        //endregion Fields
+
+        //region Initialization
+        protected Entry(int id, int count, ItemStack definition) {
+            this.id = id;
+            this.count = count;
+            this.definition = definition;
+        }
+        //endregion Initialization
+    }
+}
@@ -51,5 +51,22 @@ public abstract class MessageBase implements IMessage {
 
 
     //region Methods
+
+    /**
+     * Waits until the message can be encoded without blocking, e.g. for a payload prepared on another thread.
+     * Used for packet statistics, so the encode time does not include the wait.
+     */
+    public void awaitEncodable() {
+    }
+
+    /**
+     * Used for packet statistics to determine the compression ratio of messages that compress their payload.
+     *
+     * @param encodedSize the amount of bytes the message was encoded to.
+     * @return the amount of bytes the message would have been encoded to without compression.
+     */
+    public int getUncompressedSize(int encodedSize) {
+        return encodedSize;
+    }
     //endregion Methods
 }
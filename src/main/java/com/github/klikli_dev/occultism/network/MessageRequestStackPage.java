@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.network;
+
+import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
+import com.github.klikli_dev.occultism.util.StorageUtil;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+/**
+ * Requests a single page of the filtered and sorted stacks in the currently opened storage controller.
+ * The query is kept for the container, so later changes resend the same page.
+ */
+public class MessageRequestStackPage extends MessageBase {
+
+    //region Fields
+    private StackPageQuery query;
+    //endregion Fields
+
+    //region Initialization
+    public MessageRequestStackPage(PacketBuffer buf) {
+        this.decode(buf);
+    }
+
+    public MessageRequestStackPage(StackPageQuery query) {
+        this.query = query;
+    }
+    //endregion Initialization
+
+    //region Overrides
+    @Override
+    public void onServerReceived(MinecraftServer minecraftServer, ServerPlayerEntity player,
+                                 NetworkEvent.Context context) {
+        if (player.containerMenu instanceof IStorageControllerContainer) {
+            IStorageControllerContainer container = (IStorageControllerContainer) player.containerMenu;
+            container.setStackPageQuery(this.query);
+            StorageUtil.sendStackSnapshot(player);
+        }
+    }
+
+    @Override
+    public void encode(PacketBuffer buf) {
+        this.query.encode(buf);
+    }
+
+    @Override
+    public void decode(PacketBuffer buf) {
+        this.query = StackPageQuery.decode(buf);
+    }
+    //endregion Overrides
+}
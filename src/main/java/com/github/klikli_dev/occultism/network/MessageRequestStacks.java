@@ -24,7 +24,13 @@ package com.github.klikli_dev.occultism.network;
 
 
 import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
+import com.github.klikli_dev.occultism.api.common.data.SortDirection;
+import com.github.klikli_dev.occultism.api.common.data.SortType;
+import com.github.klikli_dev.occultism.api.common.data.StackPageQuery;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
+import com.github.klikli_dev.occultism.common.misc.StorageKeyDictionary;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummary;
+import com.github.klikli_dev.occultism.util.StorageUtil;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.server.MinecraftServer;
@@ -32,11 +38,32 @@ import net.minecraftforge.fml.network.NetworkEvent;
 
 public class MessageRequestStacks extends MessageBase {
 
+    //region Fields
+    private boolean paged;
+    private boolean resendKeys;
+    //endregion Fields
+
     //region Initialization
     public MessageRequestStacks() {
 
     }
 
+    /**
+     * @param paged true if the client only wants single pages, requested via {@link MessageRequestStackPage}.
+     */
+    public MessageRequestStacks(boolean paged) {
+        this.paged = paged;
+    }
+
+    /**
+     * @param paged      true if the client only wants single pages, requested via {@link MessageRequestStackPage}.
+     * @param resendKeys true if the client failed to resolve an item key dictionary id and needs all items resent.
+     */
+    public MessageRequestStacks(boolean paged, boolean resendKeys) {
+        this.paged = paged;
+        this.resendKeys = resendKeys;
+    }
+
     public MessageRequestStacks(PacketBuffer buf) {
         this.decode(buf);
     }
@@ -48,13 +75,26 @@ public class MessageRequestStacks extends MessageBase {
     @Override
     public void onServerReceived(MinecraftServer minecraftServer, ServerPlayerEntity player,
                                  NetworkEvent.Context context) {
+        if (this.resendKeys)
+            StorageKeyDictionary.get(player).clearSent();
+
         if (player.containerMenu instanceof IStorageControllerContainer) {
-            IStorageController storageController = ((IStorageControllerContainer) player.containerMenu)
-                    .getStorageController();
-            if (storageController != null) {
-                OccultismPackets.sendTo(player, storageController.getMessageUpdateStacks());
-                OccultismPackets
-                        .sendTo(player, new MessageUpdateLinkedMachines(storageController.getLinkedMachines()));
+            IStorageControllerContainer container = (IStorageControllerContainer) player.containerMenu;
+            //unloaded networks are browsed through their summary, the chunk only loads once items are taken.
+            StorageNetworkSummary summary = container.getUnloadedStorageSummary();
+            IStorageController storageController = summary == null ? container.getStorageController() : null;
+            if (summary != null || storageController != null) {
+                if (this.paged && container.getStackPageQuery() == null) {
+                    //until the client asks for a specific page, we only send the total count
+                    container.setStackPageQuery(new StackPageQuery("", SortType.AMOUNT, SortDirection.DOWN, 0, 0));
+                }
+                //the client asks for stacks if it has none or could not apply a delta, so always send a full snapshot
+                StorageUtil.sendStackSnapshot(player);
+                if (storageController != null) {
+                    storageController.addViewer(player);
+                    OccultismPackets.sendTo(player, new MessageUpdateLinkedMachines(
+                            storageController.getLinkedMachinesVersion(), storageController.getLinkedMachines()));
+                }
                 player.containerMenu.broadcastChanges();
             }
         }
@@ -62,12 +102,14 @@ public class MessageRequestStacks extends MessageBase {
 
     @Override
     public void encode(PacketBuffer buf) {
-
+        buf.writeBoolean(this.paged);
+        buf.writeBoolean(this.resendKeys);
     }
 
     @Override
     public void decode(PacketBuffer buf) {
-
+        this.paged = buf.readBoolean();
+        this.resendKeys = buf.readBoolean();
     }
     //endregion Overrides
 }
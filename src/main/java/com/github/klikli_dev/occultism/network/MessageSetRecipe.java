@@ -24,6 +24,7 @@ package com.github.klikli_dev.occultism.network;
 import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
 import com.github.klikli_dev.occultism.common.misc.ItemStackComparator;
+import com.github.klikli_dev.occultism.common.misc.StorageTransaction;
 import com.github.klikli_dev.occultism.util.StorageUtil;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.CraftingInventory;
@@ -78,51 +79,63 @@ public class MessageSetRecipe extends MessageBase {
 
         CraftingInventory craftMatrix = container.getCraftMatrix();
 
-        for (int slot = 0; slot < 9; slot++) {
-            Map<Integer, ItemStack> map = new HashMap<Integer, ItemStack>();
-
-            //parse the slots
-            ListNBT invList = this.nbt.getList("s" + slot, Constants.NBT.TAG_COMPOUND);
-            for (int i = 0; i < invList.size(); i++) {
-                ItemStack s = ItemStack.of(invList.getCompound(i));
-                map.put(i, s);
-            }
-
-            //region fill in recipe
-            for (int i = 0; i < map.size(); i++) {
-
-                ItemStack stack = map.get(i);
-                if (stack == null || stack.isEmpty()) {
-                    continue;
+        //region fill in recipe
+        //items taken from the network are only placed after the transaction is committed, so a rollback can never
+        //leave them in both the network and the matrix.
+        ItemStack[] networkStacks = new ItemStack[9];
+        //take all ingredients from the network as one change
+        try (StorageTransaction transaction = storageController.beginTransaction()) {
+            for (int slot = 0; slot < 9; slot++) {
+                Map<Integer, ItemStack> map = new HashMap<Integer, ItemStack>();
+
+                //parse the slots
+                ListNBT invList = this.nbt.getList("s" + slot, Constants.NBT.TAG_COMPOUND);
+                for (int i = 0; i < invList.size(); i++) {
+                    ItemStack s = ItemStack.of(invList.getCompound(i));
+                    map.put(i, s);
                 }
 
-                ItemStackComparator comparator = new ItemStackComparator(stack, true);
-
-                //attempt to get the desired stack from the player inventory
-                ItemStack extractedStack = StorageUtil
-                        .extractItem(new PlayerMainInvWrapper(player.inventory), comparator,
-                                1, true);
-                if (extractedStack != null && !extractedStack.isEmpty() && craftMatrix.getItem(slot).isEmpty()) {
-                    //if we found the desired stack, extract it for real and place it in the matrix
-                    StorageUtil.extractItem(new PlayerMainInvWrapper(player.inventory), comparator, 1, false);
-                    craftMatrix.setItem(slot, extractedStack);
-                    break;
-                }
-
-                //if we did not find anything in the player inventory, get it from the network now
-                stack = storageController.getItemStack(!stack.isEmpty() ? comparator : null, 1, false);
-                if (!stack.isEmpty() && craftMatrix.getItem(slot).isEmpty()) {
-                    //if extraction was successful, place it in the matrix
-                    craftMatrix.setItem(slot, stack);
-                    break;
+                for (int i = 0; i < map.size() && craftMatrix.getItem(slot).isEmpty(); i++) {
+
+                    ItemStack stack = map.get(i);
+                    if (stack == null || stack.isEmpty()) {
+                        continue;
+                    }
+
+                    ItemStackComparator comparator = new ItemStackComparator(stack, true);
+
+                    //attempt to get the desired stack from the player inventory
+                    ItemStack extractedStack = StorageUtil
+                            .extractItem(new PlayerMainInvWrapper(player.inventory), comparator,
+                                    1, true);
+                    if (extractedStack != null && !extractedStack.isEmpty()) {
+                        //if we found the desired stack, extract it for real and place it in the matrix
+                        StorageUtil.extractItem(new PlayerMainInvWrapper(player.inventory), comparator, 1, false);
+                        craftMatrix.setItem(slot, extractedStack);
+                        break;
+                    }
+
+                    //if we did not find anything in the player inventory, get it from the network now
+                    stack = transaction.extract(comparator, 1);
+                    if (!stack.isEmpty()) {
+                        networkStacks[slot] = stack;
+                        break;
+                    }
                 }
             }
-            //endregion fill in recipe
+            transaction.commit();
         }
+
+        for (int slot = 0; slot < 9; slot++) {
+            if (networkStacks[slot] != null)
+                craftMatrix.setItem(slot, networkStacks[slot]);
+        }
+        //endregion fill in recipe
+
         //sync to client
         container.updateCraftingSlots(true);
         //finally update controller content for client
-        OccultismPackets.sendTo(player, storageController.getMessageUpdateStacks());
+        StorageUtil.syncStacks(player);
     }
 
     @Override
@@ -23,6 +23,7 @@ package com.github.klikli_dev.occultism.network;
 
 import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
+import com.github.klikli_dev.occultism.common.misc.StorageTransaction;
 import com.github.klikli_dev.occultism.util.StorageUtil;
 import com.google.common.base.Preconditions;
 import net.minecraft.entity.player.ServerPlayerEntity;
@@ -79,31 +80,45 @@ public class MessageSetRecipeByID extends MessageBase {
         CraftingInventory craftMatrix = container.getCraftMatrix();
         NonNullList<Ingredient> ingredients = this.getIngredientsForRecipe(recipe);
 
-        for (int slot = 0; slot < 9; slot++) {
-            Ingredient ingredient = ingredients.get(slot);
-            ItemStack extractedStack = StorageUtil.extractItem(new PlayerMainInvWrapper(player.inventory), ingredient,
-                    1, true);
-
-            if (extractedStack != null && !extractedStack.isEmpty() && craftMatrix.getItem(slot).isEmpty()) {
-                //if we found the desired stack, extract it for real and place it in the matrix
-                StorageUtil.extractItem(new PlayerMainInvWrapper(player.inventory), ingredient, 1, false);
-                craftMatrix.setItem(slot, extractedStack);
-                continue;
-            }
+        //region fill in recipe
+        //items taken from the network are only placed after the transaction is committed, so a rollback can never
+        //leave them in both the network and the matrix.
+        ItemStack[] networkStacks = new ItemStack[9];
+        //take all ingredients from the network as one change
+        try (StorageTransaction transaction = storageController.beginTransaction()) {
+            for (int slot = 0; slot < 9; slot++) {
+                if (!craftMatrix.getItem(slot).isEmpty())
+                    continue;
+
+                Ingredient ingredient = ingredients.get(slot);
+                ItemStack extractedStack = StorageUtil.extractItem(new PlayerMainInvWrapper(player.inventory),
+                        ingredient, 1, true);
+
+                if (extractedStack != null && !extractedStack.isEmpty()) {
+                    //if we found the desired stack, extract it for real and place it in the matrix
+                    StorageUtil.extractItem(new PlayerMainInvWrapper(player.inventory), ingredient, 1, false);
+                    craftMatrix.setItem(slot, extractedStack);
+                    continue;
+                }
 
-            //if we did not find anything in the player inventory, get it from the network now
-            extractedStack = storageController.getItemStack(ingredient, 1, false);
-            if (!extractedStack.isEmpty() && craftMatrix.getItem(slot).isEmpty()) {
-                //if extraction was successful, place it in the matrix
-                craftMatrix.setItem(slot, extractedStack);
-                continue;
+                //if we did not find anything in the player inventory, get it from the network now
+                extractedStack = transaction.extract(ingredient, 1);
+                if (!extractedStack.isEmpty())
+                    networkStacks[slot] = extractedStack;
             }
-            //endregion fill in recipe
+            transaction.commit();
         }
+
+        for (int slot = 0; slot < 9; slot++) {
+            if (networkStacks[slot] != null)
+                craftMatrix.setItem(slot, networkStacks[slot]);
+        }
+        //endregion fill in recipe
+
         //sync to client
         container.updateCraftingSlots(true);
         //finally update controller content for client
-        OccultismPackets.sendTo(player, storageController.getMessageUpdateStacks());
+        StorageUtil.syncStacks(player);
     }
 
     @Override
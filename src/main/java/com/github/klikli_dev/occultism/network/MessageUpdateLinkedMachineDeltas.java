@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.network;
+
+import com.github.klikli_dev.occultism.api.client.gui.IStorageControllerGui;
+import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
+import com.github.klikli_dev.occultism.api.common.data.MachineReference;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This message sends the linked machines of the currently opened storage controller that were added, renamed or
+ * removed since the given base version. Each entry holds the current state of the machine, so a client that already
+ * knows some of these changes can safely apply them again.
+ * If the client is older than the base version it requests the full list instead.
+ */
+public class MessageUpdateLinkedMachineDeltas extends MessageBase {
+
+    //region Fields
+    private long baseVersion;
+    private long version;
+    private List<MachineReference> updated;
+    private List<GlobalBlockPos> removed;
+    //endregion Fields
+
+    //region Initialization
+    public MessageUpdateLinkedMachineDeltas(PacketBuffer buf) {
+        this.decode(buf);
+    }
+
+    public MessageUpdateLinkedMachineDeltas(long baseVersion, long version, List<MachineReference> updated,
+                                            List<GlobalBlockPos> removed) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.updated = updated;
+        this.removed = removed;
+    }
+    //endregion Initialization
+
+    //region Overrides
+    @Override
+    @OnlyIn(Dist.CLIENT)
+    public void onClientReceived(Minecraft minecraft, PlayerEntity player, NetworkEvent.Context context) {
+        if (minecraft.screen instanceof IStorageControllerGui) {
+            IStorageControllerGui gui = (IStorageControllerGui) minecraft.screen;
+            long knownVersion = gui.getLinkedMachinesVersion();
+            if (knownVersion < this.baseVersion || knownVersion > this.version) {
+                //we missed an update (or know a different controller instance), so our list cannot be patched.
+                OccultismPackets.sendToServer(new MessageRequestStacks());
+                return;
+            }
+            for (GlobalBlockPos position : this.removed)
+                gui.updateLinkedMachine(position, null);
+            for (MachineReference machine : this.updated)
+                gui.updateLinkedMachine(machine.globalPos, machine);
+            gui.setLinkedMachinesVersion(this.version);
+        }
+    }
+
+    @Override
+    public void encode(PacketBuffer buf) {
+        buf.writeLong(this.baseVersion);
+        buf.writeLong(this.version);
+        buf.writeVarInt(this.updated.size());
+        for (MachineReference machine : this.updated)
+            machine.encode(buf);
+        buf.writeVarInt(this.removed.size());
+        for (GlobalBlockPos position : this.removed)
+            position.encode(buf);
+    }
+
+    @Override
+    public void decode(PacketBuffer buf) {
+        this.baseVersion = buf.readLong();
+        this.version = buf.readLong();
+        int updatedSize = buf.readVarInt();
+        this.updated = new ArrayList<>(updatedSize);
+        for (int i = 0; i < updatedSize; i++)
+            this.updated.add(MachineReference.from(buf));
+        int removedSize = buf.readVarInt();
+        this.removed = new ArrayList<>(removedSize);
+        for (int i = 0; i < removedSize; i++)
+            this.removed.add(GlobalBlockPos.from(buf));
+    }
+    //endregion Overrides
+}
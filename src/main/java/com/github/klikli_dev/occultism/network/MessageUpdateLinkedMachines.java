@@ -37,11 +37,13 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * This message sends the stacks in the currently opened storage controller.
+ * This message sends all linked machines of the currently opened storage controller.
+ * Sent once when the gui is opened, afterwards only changes are sent, see {@link MessageUpdateLinkedMachineDeltas}.
  */
 public class MessageUpdateLinkedMachines extends MessageBase {
 
     //region Fields
+    private long version;
     private List<MachineReference> linkedMachines;
     //endregion Fields
 
@@ -51,11 +53,13 @@ public class MessageUpdateLinkedMachines extends MessageBase {
         this.decode(buf);
     }
 
-    public MessageUpdateLinkedMachines(List<MachineReference> linkedMachines) {
+    public MessageUpdateLinkedMachines(long version, List<MachineReference> linkedMachines) {
+        this.version = version;
         this.linkedMachines = linkedMachines;
     }
 
-    public MessageUpdateLinkedMachines(Map<GlobalBlockPos, MachineReference> linkedMachines) {
+    public MessageUpdateLinkedMachines(long version, Map<GlobalBlockPos, MachineReference> linkedMachines) {
+        this.version = version;
         this.linkedMachines = new ArrayList<>(linkedMachines.values());
     }
     //endregion Initialization
@@ -69,12 +73,14 @@ public class MessageUpdateLinkedMachines extends MessageBase {
             IStorageControllerGui gui = (IStorageControllerGui) minecraft.screen;
             if (gui != null) {
                 gui.setLinkedMachines(this.linkedMachines);
+                gui.setLinkedMachinesVersion(this.version);
             }
         }
     }
 
     @Override
     public void encode(PacketBuffer buf) {
+        buf.writeLong(this.version);
         buf.writeInt(this.linkedMachines.size());
         for (MachineReference machineReference : this.linkedMachines) {
             machineReference.encode(buf);
@@ -83,6 +89,7 @@ public class MessageUpdateLinkedMachines extends MessageBase {
 
     @Override
     public void decode(PacketBuffer buf) {
+        this.version = buf.readLong();
         int linkedMachinesSize = buf.readInt();
         this.linkedMachines = new ArrayList<>(linkedMachinesSize);
 
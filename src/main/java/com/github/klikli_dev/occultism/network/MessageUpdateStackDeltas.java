@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.network;
+
+import com.github.klikli_dev.occultism.api.client.gui.IStorageControllerGui;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+/**
+ * This message sends the stacks in the currently opened storage controller that changed since the given base version.
+ * Stacks are encoded against the per connection item key dictionary, see {@link DictionaryStackList}.
+ * Removed stacks are sent with a count of 0.
+ * If the client is not at the base version it requests a full snapshot instead.
+ */
+public class MessageUpdateStackDeltas extends MessageBase {
+
+    //region Fields
+    private long baseVersion;
+    private long version;
+    private int usedSlots;
+    private int maxSlots;
+    private DictionaryStackList deltas;
+    //endregion Fields
+
+    //region Initialization
+    public MessageUpdateStackDeltas(PacketBuffer buf) {
+        this.decode(buf);
+    }
+
+    public MessageUpdateStackDeltas(long baseVersion, long version, DictionaryStackList deltas, int usedSlots,
+                                    int maxSlots) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.deltas = deltas;
+        this.usedSlots = usedSlots;
+        this.maxSlots = maxSlots;
+    }
+    //endregion Initialization
+
+    //region Getter / Setter
+    public DictionaryStackList getDeltas() {
+        return this.deltas;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+    @Override
+    @OnlyIn(Dist.CLIENT)
+    public void onClientReceived(Minecraft minecraft, PlayerEntity player, NetworkEvent.Context context) {
+        this.deltas.define();
+        if (minecraft.screen instanceof IStorageControllerGui) {
+            IStorageControllerGui gui = (IStorageControllerGui) minecraft.screen;
+            if (gui.getStackVersion() != this.baseVersion) {
+                //we missed an update, so our view cannot be patched anymore.
+                OccultismPackets.sendToServer(new MessageRequestStacks());
+                return;
+            }
+            if (!this.apply(gui)) {
+                //the server thinks we know an item we do not, have all definitions resent.
+                OccultismPackets.sendToServer(new MessageRequestStacks(false, true));
+                return;
+            }
+            gui.setStackVersion(this.version);
+            gui.setUsedSlots(this.usedSlots);
+            gui.setMaxSlots(this.maxSlots);
+            gui.markDirty();
+        }
+    }
+
+    @Override
+    public void encode(PacketBuffer buf) {
+        buf.writeLong(this.baseVersion);
+        buf.writeLong(this.version);
+        buf.writeVarInt(this.usedSlots);
+        buf.writeVarInt(this.maxSlots);
+
+        this.deltas.encode(buf);
+    }
+
+    @Override
+    public void decode(PacketBuffer buf) {
+        this.baseVersion = buf.readLong();
+        this.version = buf.readLong();
+        this.usedSlots = buf.readVarInt();
+        this.maxSlots = buf.readVarInt();
+
+        this.deltas = DictionaryStackList.decode(buf);
+    }
+    //endregion Overrides
+
+    //region Methods
+
+    /**
+     * @return true if no stacks changed.
+     */
+    public boolean isEmpty() {
+        return this.deltas.isEmpty();
+    }
+
+    @OnlyIn(Dist.CLIENT)
+    protected boolean apply(IStorageControllerGui gui) {
+        for (int i = 0; i < this.deltas.size(); i++) {
+            if (this.deltas.getCount(i) <= 0) {
+                gui.updateStack(this.deltas.getId(i), null);
+                continue;
+            }
+            ItemStack stack = this.deltas.createStack(i);
+            if (stack == null)
+                return false;
+            gui.updateStack(this.deltas.getId(i), stack);
+        }
+        return true;
+    }
+    //endregion Methods
+}
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.network;
+
+import com.github.klikli_dev.occultism.api.client.gui.IStorageControllerGui;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This message sends a single page of the filtered and sorted stacks in the currently opened storage controller,
+ * along with the total amount of matching stacks.
+ * Stacks are encoded against the per connection item key dictionary, see {@link DictionaryStackList}.
+ */
+public class MessageUpdateStackPage extends MessageBase {
+
+    //region Fields
+    private int offset;
+    private int total;
+    private DictionaryStackList stacks;
+    private int usedSlots;
+    private int maxSlots;
+    //endregion Fields
+
+    //region Initialization
+    public MessageUpdateStackPage(PacketBuffer buf) {
+        this.decode(buf);
+    }
+
+    public MessageUpdateStackPage(int offset, int total, DictionaryStackList stacks, int usedSlots, int maxSlots) {
+        this.offset = offset;
+        this.total = total;
+        this.stacks = stacks;
+        this.usedSlots = usedSlots;
+        this.maxSlots = maxSlots;
+    }
+    //endregion Initialization
+
+    //region Getter / Setter
+    public DictionaryStackList getStacks() {
+        return this.stacks;
+    }
+    //endregion Getter / Setter
+
+    //region Overrides
+    @Override
+    @OnlyIn(Dist.CLIENT)
+    public void onClientReceived(Minecraft minecraft, PlayerEntity player, NetworkEvent.Context context) {
+        this.stacks.define();
+        if (minecraft.screen instanceof IStorageControllerGui) {
+            IStorageControllerGui gui = (IStorageControllerGui) minecraft.screen;
+            List<ItemStack> stacks = new ArrayList<>(this.stacks.size());
+            for (int i = 0; i < this.stacks.size(); i++) {
+                ItemStack stack = this.stacks.createStack(i);
+                if (stack == null) {
+                    //the server thinks we know an item we do not, have all definitions resent.
+                    OccultismPackets.sendToServer(new MessageRequestStacks(true, true));
+                    return;
+                }
+                stacks.add(stack);
+            }
+            gui.setStackPage(this.offset, this.total, stacks);
+            gui.setUsedSlots(this.usedSlots);
+            gui.setMaxSlots(this.maxSlots);
+            gui.markDirty();
+        }
+    }
+
+    @Override
+    public void encode(PacketBuffer buf) {
+        buf.writeVarInt(this.offset);
+        buf.writeVarInt(this.total);
+        buf.writeVarInt(this.usedSlots);
+        buf.writeVarInt(this.maxSlots);
+
+        this.stacks.encode(buf);
+    }
+
+    @Override
+    public void decode(PacketBuffer buf) {
+        this.offset = buf.readVarInt();
+        this.total = buf.readVarInt();
+        this.usedSlots = buf.readVarInt();
+        this.maxSlots = buf.readVarInt();
+
+        this.stacks = DictionaryStackList.decode(buf);
+    }
+    //endregion Overrides
+}
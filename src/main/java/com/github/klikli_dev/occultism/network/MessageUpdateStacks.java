@@ -22,9 +22,11 @@
 
 package com.github.klikli_dev.occultism.network;
 
+import com.github.klikli_dev.occultism.Occultism;
 import com.github.klikli_dev.occultism.api.client.gui.IStorageControllerGui;
+import com.github.klikli_dev.occultism.util.CompressionUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.PooledByteBufAllocator;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
@@ -33,23 +35,30 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.fml.network.NetworkEvent;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.DataFormatException;
 
 /**
- * This message sends the stacks in the currently opened storage controller.
+ * This message sends a full snapshot of the stacks in the currently opened storage controller.
+ * Stacks are encoded against the per connection item key dictionary, see {@link DictionaryStackList}.
+ * Later changes are sent via {@link MessageUpdateStackDeltas}.
+ * The payload is compressed on the compression worker pool, the message may only be sent once {@link #isReady()}.
  */
 public class MessageUpdateStacks extends MessageBase {
 
     //region Fields
-    private static final int DEFAULT_BUFFER_SIZE = 2 * 1024;
+    /**
+     * Rough size of a stack without nbt, used to size the buffer for the uncompressed data.
+     */
+    private static final int ESTIMATED_STACK_SIZE = 16;
 
-    private List<ItemStack> stacks;
+    private long version;
+    private DictionaryStackList stacks;
     private int usedSlots;
     private int maxSlots;
-    private ByteBuf payload;
+    private CompletableFuture<Payload> payload;
 
     //endregion Fields
 
@@ -58,104 +67,155 @@ public class MessageUpdateStacks extends MessageBase {
         this.decode(buf);
     }
 
-    public MessageUpdateStacks(List<ItemStack> stacks, int usedSlots, int maxSlots) {
+    /**
+     * Creates the message and starts compressing the stacks.
+     *
+     * @param version   the stack version of the snapshot.
+     * @param stacks    the stacks. Must not be modified afterwards.
+     * @param usedSlots the used slots.
+     * @param maxSlots  the max slots.
+     */
+    public MessageUpdateStacks(long version, DictionaryStackList stacks, int usedSlots, int maxSlots) {
+        this.version = version;
         this.stacks = stacks;
         this.usedSlots = usedSlots;
         this.maxSlots = maxSlots;
-        this.compress();
+        this.payload = CompletableFuture.supplyAsync(this::compress, CompressionUtil.EXECUTOR);
     }
     //endregion Initialization
 
+    //region Getter / Setter
+    public long getVersion() {
+        return this.version;
+    }
+
+    public DictionaryStackList getStacks() {
+        return this.stacks;
+    }
+
+    /**
+     * @return true if the payload is compressed and the message can be sent without blocking.
+     */
+    public boolean isReady() {
+        return this.payload.isDone() && !this.payload.isCompletedExceptionally();
+    }
+    //endregion Getter / Setter
+
     //region Overrides
 
     @Override
     @OnlyIn(Dist.CLIENT)
     public void onClientReceived(Minecraft minecraft, PlayerEntity player, NetworkEvent.Context context) {
-        this.uncompress();
+        if (this.stacks == null) {
+            //the payload could not be read, so we also missed the definitions in it. Start over.
+            OccultismPackets.sendToServer(new MessageRequestStacks(false, true));
+            return;
+        }
+        this.stacks.define();
+
         if (minecraft.screen instanceof IStorageControllerGui) {
             IStorageControllerGui gui = (IStorageControllerGui) minecraft.screen;
-            if (gui != null) {
-                gui.setStacks(this.stacks);
-                gui.setUsedSlots(this.usedSlots);
-                gui.setMaxSlots(this.maxSlots);
-                gui.markDirty();
+            Map<Integer, ItemStack> stacks = new LinkedHashMap<>(this.stacks.size());
+            for (int i = 0; i < this.stacks.size(); i++) {
+                ItemStack stack = this.stacks.createStack(i);
+                if (stack == null) {
+                    //the server thinks we know an item we do not, have all definitions resent.
+                    OccultismPackets.sendToServer(new MessageRequestStacks(false, true));
+                    return;
+                }
+                stacks.put(this.stacks.getId(i), stack);
             }
+            gui.setStacks(this.version, stacks);
+            gui.setUsedSlots(this.usedSlots);
+            gui.setMaxSlots(this.maxSlots);
+            gui.markDirty();
         }
     }
 
     @Override
     public void encode(PacketBuffer buf) {
+        Payload payload = this.payload.join();
+        buf.writeLong(this.version);
         buf.writeVarInt(this.usedSlots);
         buf.writeVarInt(this.maxSlots);
 
-        //write compressed size, then compressed data
-        buf.writeVarInt(this.payload.readableBytes());
-        buf.writeBytes(this.payload, 0, this.payload.readableBytes());
+        //write the sizes, then compressed data
+        buf.writeVarInt(payload.uncompressedSize);
+        buf.writeVarInt(payload.data.length);
+        buf.writeBytes(payload.data);
+    }
+
+    @Override
+    public void awaitEncodable() {
+        this.payload.join();
+    }
+
+    @Override
+    public int getUncompressedSize(int encodedSize) {
+        Payload payload = this.payload.join();
+        return encodedSize - payload.data.length + payload.uncompressedSize;
     }
 
     @Override
     public void decode(PacketBuffer buf) {
+        this.version = buf.readLong();
         this.usedSlots = buf.readVarInt();
         this.maxSlots = buf.readVarInt();
-        //read compressed size, then compressed data.
-        int compressedSize = buf.readVarInt();
-        this.payload = Unpooled.buffer(compressedSize);
-        buf.readBytes(this.payload, 0, compressedSize);
+        int uncompressedSize = buf.readVarInt();
+        byte[] data = new byte[buf.readVarInt()];
+        buf.readBytes(data);
+
+        //decode runs on the network thread, so we uncompress right here instead of on the client main thread.
+        try {
+            this.uncompress(data, uncompressedSize);
+        } catch (DataFormatException e) {
+            Occultism.LOGGER.error("Failed to uncompress storage stacks.", e);
+            this.stacks = null;
+        }
     }
     //endregion Overrides
 
     //region Methods
-    public void uncompress() {
-        Inflater decompressor = new Inflater();
-        decompressor.setInput(this.payload.array());
-
-        // Create an expandable packet buffer to hold the decompressed data
-        PacketBuffer uncompressed = new PacketBuffer(Unpooled.buffer(this.payload.readableBytes() * 4));
-
-        // Decompress the data
-        byte[] buf = new byte[1024];
-        while (!decompressor.finished()) {
-            try {
-                int count = decompressor.inflate(buf);
-                uncompressed.writeBytes(buf, 0, count);
-            } catch (Exception e) {
-            }
-        }
 
-        int stacksSize = uncompressed.readInt();
-        this.stacks = new ArrayList<>(stacksSize);
-        for (int i = 0; i < stacksSize; i++) {
-            ItemStack stack = uncompressed.readItem();
-            stack.setCount(uncompressed.readInt());
-            this.stacks.add(stack);
-        }
+    /**
+     * @param action the action to run once compression finished, on the compressing thread.
+     */
+    public void whenCompressed(Runnable action) {
+        this.payload.whenComplete((payload, error) -> {
+            if (error != null)
+                Occultism.LOGGER.error("Failed to compress storage stacks.", error);
+            action.run();
+        });
     }
 
-    public void compress() {
-        Deflater compressor = new Deflater();
-        compressor.setLevel(Deflater.BEST_SPEED);
-
-        // Give the compressor the data to compress
-        //create buffer with reasonable size (will increase automatically as needed
-        PacketBuffer uncompressed = new PacketBuffer(Unpooled.buffer(DEFAULT_BUFFER_SIZE * this.stacks.size()));
-        uncompressed.writeInt(this.stacks.size());
+    protected void uncompress(byte[] data, int uncompressedSize) throws DataFormatException {
+        PacketBuffer uncompressed = new PacketBuffer(CompressionUtil.inflate(data, uncompressedSize));
+        this.stacks = DictionaryStackList.decode(uncompressed);
+    }
 
-        for (ItemStack stack : this.stacks) {
-            uncompressed.writeItem(stack);
-            uncompressed.writeInt(stack.getCount());
+    protected Payload compress() {
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.heapBuffer(
+                Math.max(256, ESTIMATED_STACK_SIZE * this.stacks.size()));
+        try {
+            this.stacks.encode(new PacketBuffer(buffer));
+            return new Payload(CompressionUtil.deflate(buffer), buffer.readableBytes());
+        } finally {
+            buffer.release();
         }
+    }
+    //endregion Methods
 
-        compressor.setInput(uncompressed.array(), 0, uncompressed.readableBytes());
-        compressor.finish();
-
+    protected static class Payload {
+        //region Fields
+        protected final byte[] data;
+        protected final int uncompressedSize;
+        //endregion Fields
 
-        this.payload = Unpooled.buffer(DEFAULT_BUFFER_SIZE);
-        // Compress the data
-        byte[] buf = new byte[1024];
-        while (!compressor.finished()) {
-            int count = compressor.deflate(buf);
-            this.payload.writeBytes(buf, 0, count);
+        //region Initialization
+        protected Payload(byte[] data, int uncompressedSize) {
+            this.data = data;
+            this.uncompressedSize = uncompressedSize;
         }
+        //endregion Initialization
     }
-    //endregion Methods
 }
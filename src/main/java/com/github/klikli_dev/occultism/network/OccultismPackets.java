@@ -53,151 +53,181 @@ public class OccultismPackets {
 
         INSTANCE.registerMessage(nextID(),
                 MessageRequestStacks.class,
-                MessageRequestStacks::encode,
+                PacketStatistics.measure(MessageRequestStacks.class, MessageRequestStacks::encode),
                 MessageRequestStacks::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageUpdateLinkedMachines.class,
-                MessageUpdateLinkedMachines::encode,
+                PacketStatistics.measure(MessageUpdateLinkedMachines.class, MessageUpdateLinkedMachines::encode),
                 MessageUpdateLinkedMachines::new,
                 OccultismPacketHandler::handle);
 
+        INSTANCE.registerMessage(nextID(),
+                MessageUpdateLinkedMachineDeltas.class,
+                PacketStatistics.measure(MessageUpdateLinkedMachineDeltas.class,
+                        MessageUpdateLinkedMachineDeltas::encode),
+                MessageUpdateLinkedMachineDeltas::new,
+                OccultismPacketHandler::handle);
+
         INSTANCE.registerMessage(nextID(),
                 MessageUpdateStacks.class,
-                MessageUpdateStacks::encode,
+                PacketStatistics.measure(MessageUpdateStacks.class, MessageUpdateStacks::encode),
                 MessageUpdateStacks::new,
                 OccultismPacketHandler::handle);
 
+        INSTANCE.registerMessage(nextID(),
+                MessageUpdateStackDeltas.class,
+                PacketStatistics.measure(MessageUpdateStackDeltas.class, MessageUpdateStackDeltas::encode),
+                MessageUpdateStackDeltas::new,
+                OccultismPacketHandler::handle);
+
+        INSTANCE.registerMessage(nextID(),
+                MessageRequestStackPage.class,
+                PacketStatistics.measure(MessageRequestStackPage.class, MessageRequestStackPage::encode),
+                MessageRequestStackPage::new,
+                OccultismPacketHandler::handle);
+
+        INSTANCE.registerMessage(nextID(),
+                MessageUpdateStackPage.class,
+                PacketStatistics.measure(MessageUpdateStackPage.class, MessageUpdateStackPage::encode),
+                MessageUpdateStackPage::new,
+                OccultismPacketHandler::handle);
+
         INSTANCE.registerMessage(nextID(),
                 MessageSetRecipe.class,
-                MessageSetRecipe::encode,
+                PacketStatistics.measure(MessageSetRecipe.class, MessageSetRecipe::encode),
                 MessageSetRecipe::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageClearCraftingMatrix.class,
-                MessageClearCraftingMatrix::encode,
+                PacketStatistics.measure(MessageClearCraftingMatrix.class, MessageClearCraftingMatrix::encode),
                 MessageClearCraftingMatrix::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageTakeItem.class,
-                MessageTakeItem::encode,
+                PacketStatistics.measure(MessageTakeItem.class, MessageTakeItem::encode),
                 MessageTakeItem::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageUpdateMouseHeldItem.class,
-                MessageUpdateMouseHeldItem::encode,
+                PacketStatistics.measure(MessageUpdateMouseHeldItem.class, MessageUpdateMouseHeldItem::encode),
                 MessageUpdateMouseHeldItem::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageInsertMouseHeldItem.class,
-                MessageInsertMouseHeldItem::encode,
+                PacketStatistics.measure(MessageInsertMouseHeldItem.class, MessageInsertMouseHeldItem::encode),
                 MessageInsertMouseHeldItem::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageRequestOrder.class,
-                MessageRequestOrder::encode,
+                PacketStatistics.measure(MessageRequestOrder.class, MessageRequestOrder::encode),
                 MessageRequestOrder::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSortItems.class,
-                MessageSortItems::encode,
+                PacketStatistics.measure(MessageSortItems.class, MessageSortItems::encode),
                 MessageSortItems::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetItemMode.class,
-                MessageSetItemMode::encode,
+                PacketStatistics.measure(MessageSetItemMode.class, MessageSetItemMode::encode),
                 MessageSetItemMode::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetWorkAreaSize.class,
-                MessageSetWorkAreaSize::encode,
+                PacketStatistics.measure(MessageSetWorkAreaSize.class, MessageSetWorkAreaSize::encode),
                 MessageSetWorkAreaSize::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetManagedMachine.class,
-                MessageSetManagedMachine::encode,
+                PacketStatistics.measure(MessageSetManagedMachine.class, MessageSetManagedMachine::encode),
                 MessageSetManagedMachine::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetDivinationResult.class,
-                MessageSetDivinationResult::encode,
+                PacketStatistics.measure(MessageSetDivinationResult.class, MessageSetDivinationResult::encode),
                 MessageSetDivinationResult::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSelectBlock.class,
-                MessageSelectBlock::encode,
+                PacketStatistics.measure(MessageSelectBlock.class, MessageSelectBlock::encode),
                 MessageSelectBlock::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetJumps.class,
-                MessageSetJumps::encode,
+                PacketStatistics.measure(MessageSetJumps.class, MessageSetJumps::encode),
                 MessageSetJumps::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageDoubleJump.class,
-                MessageDoubleJump::encode,
+                PacketStatistics.measure(MessageDoubleJump.class, MessageDoubleJump::encode),
                 MessageDoubleJump::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetFilterMode.class,
-                MessageSetFilterMode::encode,
+                PacketStatistics.measure(MessageSetFilterMode.class, MessageSetFilterMode::encode),
                 MessageSetFilterMode::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetRecipeByID.class,
-                MessageSetRecipeByID::encode,
+                PacketStatistics.measure(MessageSetRecipeByID.class, MessageSetRecipeByID::encode),
                 MessageSetRecipeByID::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageOpenSatchel.class,
-                MessageOpenSatchel::encode,
+                PacketStatistics.measure(MessageOpenSatchel.class, MessageOpenSatchel::encode),
                 MessageOpenSatchel::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageSetTagFilterText.class,
-                MessageSetTagFilterText::encode,
+                PacketStatistics.measure(MessageSetTagFilterText.class, MessageSetTagFilterText::encode),
                 MessageSetTagFilterText::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageToggleFamiliarSettings.class,
-                MessageToggleFamiliarSettings::encode,
+                PacketStatistics.measure(MessageToggleFamiliarSettings.class, MessageToggleFamiliarSettings::encode),
                 MessageToggleFamiliarSettings::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageOpenStorageRemote.class,
-                MessageOpenStorageRemote::encode,
+                PacketStatistics.measure(MessageOpenStorageRemote.class, MessageOpenStorageRemote::encode),
                 MessageOpenStorageRemote::new,
                 OccultismPacketHandler::handle);
 
         INSTANCE.registerMessage(nextID(),
                 MessageUpdatePentacles.class,
-                MessageUpdatePentacles::encode,
+                PacketStatistics.measure(MessageUpdatePentacles.class, MessageUpdatePentacles::encode),
                 MessageUpdatePentacles::new,
                 OccultismPacketHandler::handle);
     }
 
     public static <MSG> void sendTo(ServerPlayerEntity player, MSG message) {
-        INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), message);
+        PacketStatistics.beginSend(player);
+        try {
+            INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), message);
+        } finally {
+            PacketStatistics.endSend();
+        }
     }
 
     public static <MSG> void sendToTracking(Entity entity, MSG message) {
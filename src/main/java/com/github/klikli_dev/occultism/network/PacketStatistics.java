@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.network;
+
+import com.github.klikli_dev.occultism.Occultism;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.network.PacketBuffer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Accounts the traffic of all messages sent through {@link OccultismPackets}: count, encoded bytes, size before
+ * compression and encode time per message type, and encoded bytes per receiving player.
+ * Encoding happens on the sending thread, which may be the server or the client thread, so counters are thread safe.
+ */
+public class PacketStatistics {
+
+    //region Fields
+    private static final Map<String, Counter> MESSAGES = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> PLAYERS = new ConcurrentHashMap<>();
+    /**
+     * The player the message currently being encoded is sent to, set by {@link OccultismPackets#sendTo}.
+     */
+    private static final ThreadLocal<String> RECIPIENT = new ThreadLocal<>();
+    private static volatile long startTime = System.currentTimeMillis();
+    private static long lastLogTime = System.currentTimeMillis();
+    //endregion Fields
+
+    //region Static Methods
+
+    /**
+     * Wraps the given encoder to record each encoded message.
+     *
+     * @param type    the message type.
+     * @param encoder the encoder.
+     * @return the measuring encoder.
+     */
+    public static <MSG> BiConsumer<MSG, PacketBuffer> measure(Class<MSG> type, BiConsumer<MSG, PacketBuffer> encoder) {
+        String name = type.getSimpleName();
+        return (message, buf) -> {
+            //messages compressed in the background are only timed once the payload is ready
+            if (message instanceof MessageBase)
+                ((MessageBase) message).awaitEncodable();
+            int start = buf.writerIndex();
+            long startNanos = System.nanoTime();
+            encoder.accept(message, buf);
+            long nanos = System.nanoTime() - startNanos;
+            int bytes = buf.writerIndex() - start;
+            int uncompressedBytes = message instanceof MessageBase ?
+                                            ((MessageBase) message).getUncompressedSize(bytes) : bytes;
+
+            MESSAGES.computeIfAbsent(name, k -> new Counter()).add(bytes, uncompressedBytes, nanos);
+            String recipient = RECIPIENT.get();
+            if (recipient != null)
+                PLAYERS.computeIfAbsent(recipient, k -> new Counter()).add(bytes, uncompressedBytes, nanos);
+        };
+    }
+
+    /**
+     * Attributes messages encoded on this thread to the given player until {@link #endSend()} is called.
+     *
+     * @param player the receiving player.
+     */
+    public static void beginSend(ServerPlayerEntity player) {
+        RECIPIENT.set(player.getGameProfile().getName());
+    }
+
+    public static void endSend() {
+        RECIPIENT.remove();
+    }
+
+    /**
+     * Clears all counters and restarts the measuring period.
+     */
+    public static void reset() {
+        MESSAGES.clear();
+        PLAYERS.clear();
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return one line per message type, sorted by encoded bytes, with rates per second since the last reset.
+     */
+    public static List<String> getMessageReport() {
+        return report(MESSAGES);
+    }
+
+    /**
+     * @return one line per player, sorted by encoded bytes, with rates per second since the last reset.
+     */
+    public static List<String> getPlayerReport() {
+        return report(PLAYERS);
+    }
+
+    /**
+     * Writes the message report to the log every interval seconds. Called at the end of each server tick.
+     *
+     * @param interval the log interval in seconds, 0 to disable logging.
+     */
+    public static void tick(int interval) {
+        long now = System.currentTimeMillis();
+        if (interval <= 0 || now - lastLogTime < interval * 1000L)
+            return;
+        lastLogTime = now;
+
+        List<String> report = getMessageReport();
+        if (report.isEmpty())
+            return;
+        Occultism.LOGGER.info("Packet statistics for the last {}s:", (now - startTime) / 1000);
+        report.forEach(Occultism.LOGGER::info);
+    }
+
+    protected static List<String> report(Map<String, Counter> counters) {
+        double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        List<Map.Entry<String, Counter>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<String, Counter> entry) -> entry.getValue().bytes.sum()).reversed());
+
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Counter> entry : entries) {
+            lines.add(entry.getKey() + ": " + entry.getValue().format(seconds));
+        }
+        return lines;
+    }
+    //endregion Static Methods
+
+    protected static class Counter {
+        //region Fields
+        protected final LongAdder count = new LongAdder();
+        protected final LongAdder bytes = new LongAdder();
+        protected final LongAdder uncompressedBytes = new LongAdder();
+        protected final LongAdder encodeNanos = new LongAdder();
+        //endregion Fields
+
+        //region Methods
+        protected void add(int bytes, int uncompressedBytes, long encodeNanos) {
+            this.count.increment();
+            this.bytes.add(bytes);
+            this.uncompressedBytes.add(uncompressedBytes);
+            this.encodeNanos.add(encodeNanos);
+        }
+
+        protected String format(double seconds) {
+            long count = this.count.sum();
+            long bytes = this.bytes.sum();
+            long uncompressedBytes = this.uncompressedBytes.sum();
+            return String.format("%d messages (%.1f/s), %d bytes (%.1f/s), compression ratio %.2f, " +
+                                         "avg encode time %.1fus",
+                    count, count / seconds, bytes, bytes / seconds,
+                    uncompressedBytes == 0 ? 1.0 : (double) bytes / uncompressedBytes,
+                    count == 0 ? 0.0 : this.encodeNanos.sum() / 1000.0 / count);
+        }
+        //endregion Methods
+    }
+}
@@ -33,6 +33,7 @@ import com.github.klikli_dev.occultism.common.item.spirit.*;
 import com.github.klikli_dev.occultism.common.item.storage.DimensionalMatrixItem;
 import com.github.klikli_dev.occultism.common.item.storage.SatchelItem;
 import com.github.klikli_dev.occultism.common.item.storage.StableWormholeBlockItem;
+import com.github.klikli_dev.occultism.common.item.storage.StorageControllerBlockItem;
 import com.github.klikli_dev.occultism.common.item.storage.StorageRemoteItem;
 import com.github.klikli_dev.occultism.common.item.tool.*;
 import net.minecraft.inventory.EquipmentSlotType;
@@ -238,6 +239,9 @@ public class OccultismItems {
                     EquipmentSlotType.HEAD, defaultProperties().stacksTo(1)));
 
     //Machines
+    public static final RegistryObject<StorageControllerBlockItem> STORAGE_CONTROLLER =
+            ITEMS.register("storage_controller",
+                    () -> new StorageControllerBlockItem(OccultismBlocks.STORAGE_CONTROLLER.get(), defaultProperties()));
     public static final RegistryObject<StableWormholeBlockItem> STABLE_WORMHOLE = ITEMS.register("stable_wormhole",
             () -> new StableWormholeBlockItem(OccultismBlocks.STABLE_WORMHOLE.get(), defaultProperties()));
 
@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright 2020 klikli-dev
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.klikli_dev.occultism.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses network payloads with per thread pooled deflaters and inflaters.
+ * Large payloads are compressed on a small bounded worker pool, so the server thread only has to take the snapshot.
+ */
+public class CompressionUtil {
+    //region Fields
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_QUEUED_TASKS = 64;
+
+    /**
+     * Compresses payloads off the server thread. If the queue is full the submitting thread compresses itself,
+     * which throttles producers instead of growing the queue.
+     */
+    public static final ExecutorService EXECUTOR = new ThreadPoolExecutor(1,
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)), 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_TASKS), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Occultism Compression " + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+    //endregion Fields
+
+    //region Static Methods
+
+    /**
+     * Compresses the readable bytes of the given buffer.
+     *
+     * @param uncompressed the data to compress, must be a heap buffer.
+     * @return the compressed data.
+     */
+    public static byte[] deflate(ByteBuf uncompressed) {
+        Deflater deflater = DEFLATER.get();
+        byte[] chunk = CHUNK.get();
+        try {
+            deflater.setInput(uncompressed.array(), uncompressed.arrayOffset() + uncompressed.readerIndex(),
+                    uncompressed.readableBytes());
+            deflater.finish();
+
+            //item data usually compresses to well below a quarter of its size
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                    Math.max(64, uncompressed.readableBytes() / 4));
+            while (!deflater.finished()) {
+                int count = deflater.deflate(chunk);
+                compressed.write(chunk, 0, count);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Decompresses the given data.
+     *
+     * @param compressed       the compressed data.
+     * @param uncompressedSize the size of the uncompressed data.
+     * @return a buffer containing the uncompressed data.
+     * @throws DataFormatException if the data is invalid or does not match the given size.
+     */
+    public static ByteBuf inflate(byte[] compressed, int uncompressedSize) throws DataFormatException {
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(compressed);
+            byte[] uncompressed = new byte[uncompressedSize];
+            int size = 0;
+            while (!inflater.finished()) {
+                int count = inflater.inflate(uncompressed, size, uncompressedSize - size);
+                //no progress means the input is truncated or the size is wrong, waiting would loop forever
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary() || size == uncompressedSize))
+                    throw new DataFormatException("Compressed data does not match the expected size " + uncompressedSize);
+                size += count;
+            }
+            return Unpooled.wrappedBuffer(uncompressed, 0, size);
+        } finally {
+            inflater.reset();
+        }
+    }
+    //endregion Static Methods
+}
@@ -23,7 +23,17 @@
 package com.github.klikli_dev.occultism.util;
 
 import com.github.klikli_dev.occultism.api.common.container.IStorageControllerContainer;
+import com.github.klikli_dev.occultism.api.common.data.GlobalBlockPos;
 import com.github.klikli_dev.occultism.api.common.tile.IStorageController;
+import com.github.klikli_dev.occultism.common.misc.StorageKeyDictionary;
+import com.github.klikli_dev.occultism.common.misc.StorageNetworkSummary;
+import com.github.klikli_dev.occultism.common.misc.StorageSyncManager;
+import com.github.klikli_dev.occultism.common.misc.StorageTransaction;
+import com.github.klikli_dev.occultism.common.tile.StorageControllerTileEntity;
+import com.github.klikli_dev.occultism.network.MessageBase;
+import com.github.klikli_dev.occultism.network.MessageUpdateStackDeltas;
+import com.github.klikli_dev.occultism.network.MessageUpdateStackPage;
+import com.github.klikli_dev.occultism.network.MessageUpdateStacks;
 import com.github.klikli_dev.occultism.network.OccultismPackets;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.CraftingInventory;
@@ -48,6 +58,138 @@ import java.util.function.Predicate;
 public class StorageUtil {
     //region Static Methods
 
+    /**
+     * Brings the stacks shown to the player up to date at the end of the tick, if the open container implements
+     * IStorageControllerContainer.
+     * Only the changes since the last sync are sent, unless the client has not received a full snapshot yet.
+     *
+     * @param player the player to sync the stacks for.
+     */
+    public static void syncStacks(ServerPlayerEntity player) {
+        syncStacks(player, false);
+    }
+
+    /**
+     * Sends a full snapshot of the stacks to the player at the end of the tick, if the open container implements
+     * IStorageControllerContainer.
+     *
+     * @param player the player to send the stacks to.
+     */
+    public static void sendStackSnapshot(ServerPlayerEntity player) {
+        syncStacks(player, true);
+    }
+
+    protected static void syncStacks(ServerPlayerEntity player, boolean snapshot) {
+        //coalesced per tick, so multiple changes in one interaction result in a single update
+        StorageSyncManager.request(player, snapshot);
+    }
+
+    /**
+     * Immediately brings the stacks shown to the player up to date, if the open container implements
+     * IStorageControllerContainer. Use {@link #syncStacks(ServerPlayerEntity)} instead, which coalesces the
+     * updates of a tick.
+     *
+     * @param player   the player to sync the stacks for.
+     * @param snapshot true to send a full snapshot rather than the changes since the last sync.
+     */
+    public static void sendStacks(ServerPlayerEntity player, boolean snapshot) {
+        if (player.containerMenu instanceof IStorageControllerContainer) {
+            IStorageControllerContainer container = (IStorageControllerContainer) player.containerMenu;
+            //while a snapshot is compressed for this container, deltas have to wait until it has been sent.
+            if (container.isStackSnapshotPending())
+                return;
+
+            StorageNetworkSummary summary = container.getUnloadedStorageSummary();
+            if (summary != null) {
+                syncSummary(player, container, summary, snapshot);
+                return;
+            }
+
+            IStorageController storageController = container.getStorageController();
+            if (storageController == null) {
+                return;
+            }
+
+            StorageKeyDictionary dictionary = StorageKeyDictionary.get(player);
+            if (container.getStackPageQuery() != null) {
+                //paged clients get their page resent whenever anything changed
+                if (snapshot || container.getSyncedStackVersion() != storageController.getStackVersion()) {
+                    MessageUpdateStackPage message =
+                            storageController.getStackPageMessage(container.getStackPageQuery(), dictionary);
+                    OccultismPackets.sendTo(player, message);
+                    dictionary.markSent(message.getStacks().getDefinedKeys());
+                    container.setSyncedStackVersion(storageController.getStackVersion());
+                }
+                return;
+            }
+
+            MessageBase message = snapshot ? storageController.getMessageUpdateStacks(dictionary) :
+                    storageController.getStackSyncMessage(container.getSyncedStackVersion(), dictionary);
+            if (message instanceof MessageUpdateStacks) {
+                sendStackSnapshot(player, container, (MessageUpdateStacks) message);
+            } else if (message instanceof MessageUpdateStackDeltas) {
+                OccultismPackets.sendTo(player, message);
+                dictionary.markSent(((MessageUpdateStackDeltas) message).getDeltas().getDefinedKeys());
+                container.setSyncedStackVersion(storageController.getStackVersion());
+            }
+        }
+    }
+
+    /**
+     * Sends the read-only summary of an unloaded network, if the player has not been sent this summary yet.
+     */
+    protected static void syncSummary(ServerPlayerEntity player, IStorageControllerContainer container,
+                                      StorageNetworkSummary summary, boolean snapshot) {
+        if (!snapshot && container.getSyncedStackVersion() == summary.getVersion())
+            return;
+
+        StorageKeyDictionary dictionary = StorageKeyDictionary.get(player);
+        if (container.getStackPageQuery() != null) {
+            MessageUpdateStackPage message = summary.getStackPageMessage(container.getStackPageQuery(), dictionary);
+            OccultismPackets.sendTo(player, message);
+            dictionary.markSent(message.getStacks().getDefinedKeys());
+            container.setSyncedStackVersion(summary.getVersion());
+            return;
+        }
+        sendStackSnapshot(player, container, summary.getMessageUpdateStacks(dictionary));
+    }
+
+    protected static void sendStackSnapshot(ServerPlayerEntity player, IStorageControllerContainer container,
+                                            MessageUpdateStacks message) {
+        if (message.isReady()) {
+            OccultismPackets.sendTo(player, message);
+            StorageKeyDictionary.get(player).markSent(message.getStacks().getDefinedKeys());
+            container.setSyncedStackVersion(message.getVersion());
+            return;
+        }
+
+        container.setStackSnapshotPending(true);
+        message.whenCompressed(() -> player.server.execute(() -> {
+            container.setStackSnapshotPending(false);
+            if (!player.hasDisconnected() && player.containerMenu == container && message.isReady()) {
+                OccultismPackets.sendTo(player, message);
+                //definitions only count as sent once they actually were, a dropped snapshot leaves them unsent.
+                StorageKeyDictionary.get(player).markSent(message.getStacks().getDefinedKeys());
+                container.setSyncedStackVersion(message.getVersion());
+                //catch up on anything that changed while compressing
+                syncStacks(player, false);
+            }
+        }));
+    }
+
+    /**
+     * Gets the position machines should link to in order to access the given storage controller.
+     * Controllers extending the network of another controller resolve to that primary controller.
+     *
+     * @param tileEntity the storage controller tile entity.
+     * @return the position to link to.
+     */
+    public static GlobalBlockPos getNetworkPosition(TileEntity tileEntity) {
+        if (tileEntity instanceof StorageControllerTileEntity)
+            return ((StorageControllerTileEntity) tileEntity).getLinkedStorageControllerPosition();
+        return GlobalBlockPos.from(tileEntity);
+    }
+
     /**
      * Clears the crafting matrix of the open container, if that container implements IStorageControllerContainer
      *
@@ -64,29 +206,33 @@ public class StorageUtil {
                 return;
             }
 
-            for (int i = 0; i < 9; i++) {
-                ItemStack stackInSlot = craftMatrix.getItem(i);
-                //ignore already cleared slots
-                if (stackInSlot.isEmpty()) {
-                    continue;
-                }
+            //insert all slots as one change
+            try (StorageTransaction transaction = storageController.beginTransaction()) {
+                for (int i = 0; i < 9; i++) {
+                    ItemStack stackInSlot = craftMatrix.getItem(i);
+                    //ignore already cleared slots
+                    if (stackInSlot.isEmpty()) {
+                        continue;
+                    }
 
-                //move items into storage, and if storage is full, keep remainder in crafting matrix
-                int amountBeforeInsert = stackInSlot.getCount();
-                int remainingAfterInsert = storageController.insertStack(stackInSlot.copy(), false);
-                if (amountBeforeInsert == remainingAfterInsert) {
-                    continue;
+                    //move items into storage, and if storage is full, keep remainder in crafting matrix
+                    int amountBeforeInsert = stackInSlot.getCount();
+                    int remainingAfterInsert = transaction.insert(stackInSlot).getCount();
+                    if (amountBeforeInsert == remainingAfterInsert) {
+                        continue;
+                    }
+                    if (remainingAfterInsert == 0)
+                        craftMatrix.setItem(i, ItemStack.EMPTY);
+                    else
+                        craftMatrix.setItem(i,
+                                ItemHandlerHelper.copyStackWithSize(stackInSlot, remainingAfterInsert));
                 }
-                if (remainingAfterInsert == 0)
-                    craftMatrix.setItem(i, ItemStack.EMPTY);
-                else
-                    craftMatrix.setItem(i,
-                            ItemHandlerHelper.copyStackWithSize(stackInSlot, remainingAfterInsert));
+                transaction.commit();
             }
 
             //finally if requested, send the updated storage controller contents to the player.
             if (sendStackUpdate) {
-                OccultismPackets.sendTo(player, storageController.getMessageUpdateStacks());
+                syncStacks(player);
                 ((Container) container).broadcastChanges();
             }
         }
@@ -124,7 +270,7 @@ public class StorageUtil {
 
             //finally if requested, send the updated storage controller contents to the player.
             if (sendStackUpdate) {
-                OccultismPackets.sendTo(player, storageController.getMessageUpdateStacks());
+                syncStacks(player);
                 ((Container) container).broadcastChanges();
             }
         }